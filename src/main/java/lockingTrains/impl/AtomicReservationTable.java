@@ -0,0 +1,116 @@
+package lockingTrains.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Position;
+
+/**
+ * Lock-free {@link ReservationTable} keeping one bit per position in an
+ * {@link AtomicLongArray}. Connection {@code i} is bit {@code i}, location
+ * {@code i} is bit {@code connections + i}, so the required reservation order
+ * is simply ascending bit order.
+ * <p>
+ * {@link #tryReserve tryReserve} claims all bits of a route that share a word
+ * with a single compare-and-set and rolls back the words already claimed when
+ * it runs into a reserved bit. Reservations are not tied to a thread.
+ */
+class AtomicReservationTable extends ReservationTable {
+	private final int connections;
+	private final AtomicLongArray bits;
+
+	AtomicReservationTable(final Map map) {
+		super(map);
+		this.connections = map.connections().size();
+		this.bits = new AtomicLongArray((connections + map.locations().size() + 63) >>> 6);
+	}
+
+	@Override
+	Position tryReserve(final int[] connections, final int[] locations) {
+		final int total = connections.length + locations.length;
+		int i = 0;
+		while (i < total) {
+			//collect the run of indices sharing the word of index i
+			final int word = bit(connections, locations, i) >>> 6;
+			long mask = 0;
+			int end = i;
+			while (end < total && bit(connections, locations, end) >>> 6 == word)
+				mask |= 1L << bit(connections, locations, end++);
+
+			long current;
+			do {
+				current = bits.get(word);
+				if ((current & mask) != 0) {
+					rollback(connections, locations, i);
+					return position((word << 6) + Long.numberOfTrailingZeros(current & mask));
+				}
+			} while (!bits.compareAndSet(word, current, current | mask));
+
+			i = end;
+		}
+		return null;
+	}
+
+	/**
+	 * Releases the first {@code count} bits of a route again and wakes up whoever
+	 * started waiting for them in the meantime.
+	 */
+	private void rollback(final int[] connections, final int[] locations, final int count) {
+		int i = 0;
+		while (i < count) {
+			final int word = bit(connections, locations, i) >>> 6;
+			long mask = 0;
+			while (i < count && bit(connections, locations, i) >>> 6 == word)
+				mask |= 1L << bit(connections, locations, i++);
+			clear(word, mask);
+		}
+
+		for (i = 0; i < count; i++) {
+			if (i < connections.length)
+				wake(true, connections[i]);
+			else
+				wake(false, locations[i - connections.length]);
+		}
+	}
+
+	@Override
+	protected void releaseConnection(final int connection) {
+		clear(connection >>> 6, 1L << connection);
+	}
+
+	@Override
+	protected void releaseLocation(final int location) {
+		final int bit = connections + location;
+		clear(bit >>> 6, 1L << bit);
+	}
+
+	@Override
+	protected boolean isConnectionReserved(final int connection) {
+		return (bits.get(connection >>> 6) & 1L << connection) != 0;
+	}
+
+	@Override
+	protected boolean isLocationReserved(final int location) {
+		final int bit = connections + location;
+		return (bits.get(bit >>> 6) & 1L << bit) != 0;
+	}
+
+	private void clear(final int word, final long mask) {
+		long current;
+		do {
+			current = bits.get(word);
+		} while (!bits.compareAndSet(word, current, current & ~mask));
+	}
+
+	/**
+	 * Get the bit of the {@code i}-th position of a route, counting connections
+	 * first.
+	 */
+	private int bit(final int[] connections, final int[] locations, final int i) {
+		return i < connections.length ? connections[i] : this.connections + locations[i - connections.length];
+	}
+
+	private Position position(final int bit) {
+		return bit < connections ? map.connections().get(bit) : map.locations().get(bit - connections);
+	}
+}
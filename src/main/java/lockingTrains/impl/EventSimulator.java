@@ -0,0 +1,306 @@
+package lockingTrains.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import lockingTrains.shared.AvoidSet;
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Position;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.Router;
+import lockingTrains.shared.TimeScale;
+import lockingTrains.shared.TrainSchedule;
+import lockingTrains.validation.ArriveEvent;
+import lockingTrains.validation.DoneEvent;
+import lockingTrains.validation.FinishEvent;
+import lockingTrains.validation.LeaveEvent;
+import lockingTrains.validation.PauseEvent;
+import lockingTrains.validation.Recorder;
+import lockingTrains.validation.ResumeEvent;
+import lockingTrains.validation.StartEvent;
+import lockingTrains.validation.TrainEvent;
+import lockingTrains.validation.TravelEvent;
+
+/**
+ * Discrete-event version of the threaded simulation. Trains route, reserve,
+ * park and travel like a {@link Train}, but as state machines driven by a
+ * single thread from a queue of events on a virtual clock. Travelling over a
+ * connection advances the clock by its travel time, scaled by the
+ * {@link TimeScale} of the run, instead of sleeping, so a whole day of
+ * schedules runs in a moment. The recorder gets the virtual timestamps,
+ * counted from the real time the simulation started.
+ * <p>
+ * Reservations are kept in an {@link AtomicReservationTable}, which does not
+ * tie them to a thread. A train waiting for its route to a parking place is
+ * woken up when the position that blocked it is freed. If all unfinished
+ * trains wait, the simulation is deadlocked and fails instead of hanging.
+ */
+class EventSimulator {
+	private final Map map;
+	private final Router router;
+	private final Recorder recorder;
+	private final TimeScale timeScale;
+	private final TrainService trainService;
+	private final List<TrainSchedule> schedules;
+	private final PriorityQueue<Activation> agenda;
+	private final List<List<EventTrain>> waiting;
+	private final long base;
+	private long now;
+	private long sequence;
+	private int finished;
+
+	/**
+	 * A train continuing at a point in virtual time. Activations at the same time
+	 * run in the order they were scheduled.
+	 */
+	private static class Activation implements Comparable<Activation> {
+		final long time;
+		final long sequence;
+		final EventTrain train;
+
+		Activation(final long time, final long sequence, final EventTrain train) {
+			this.time = time;
+			this.sequence = sequence;
+			this.train = train;
+		}
+
+		@Override
+		public int compareTo(final Activation other) {
+			if (time != other.time)
+				return Long.compare(time, other.time);
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/**
+	 * What a train does when it is activated next.
+	 */
+	private enum State {
+		START, ROUTE, WAIT, ARRIVE
+	}
+
+	/**
+	 * @param problem   to simulate.
+	 * @param recorder  to call with virtual timestamps.
+	 * @param router    to compute the routes of the trains with.
+	 * @param timeScale to advance the virtual clock by.
+	 */
+	EventSimulator(final Problem problem, final Recorder recorder, final Router router, final TimeScale timeScale) {
+		this.map = problem.map();
+		this.router = router;
+		this.recorder = recorder;
+		this.timeScale = timeScale;
+		this.schedules = problem.schedules();
+		this.trainService = new TrainService(new AtomicReservationTable(map), 0, router, timeScale);
+		this.agenda = new PriorityQueue<>();
+		this.waiting = new ArrayList<>(map.connections().size() + map.locations().size());
+		for (int i = 0; i < map.connections().size() + map.locations().size(); i++)
+			waiting.add(new ArrayList<>(0));
+		this.base = System.currentTimeMillis();
+	}
+
+	/**
+	 * Runs the simulation until all trains finished.
+	 *
+	 * @return {@code true} if the simulation ran successfully.
+	 */
+	boolean run() {
+		try {
+			for (int i = 0; i < schedules.size(); i++)
+				schedule(new EventTrain(schedules.get(i), i), 0);
+
+			while (!agenda.isEmpty()) {
+				final var activation = agenda.poll();
+				now = activation.time;
+				activation.train.step();
+			}
+			if (finished < schedules.size()) {
+				System.out.println(String.format("Deadlock at %d ms: %d trains wait for each other", now,
+						schedules.size() - finished));
+				return false;
+			}
+
+			record(new DoneEvent(base + now));
+			return true;
+		} catch (Exception | AssertionError e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private void schedule(final EventTrain train, final long delay) {
+		agenda.add(new Activation(now + delay, sequence++, train));
+	}
+
+	private void record(final TrainEvent event) {
+		event.replay(recorder);
+	}
+
+	private int slot(final Position position) {
+		if (position instanceof Connection)
+			return ((Connection) position).getRomanAndAntoineID();
+		return map.connections().size() + ((Location) position).getRomanAndAntoineID();
+	}
+
+	private void freeConnection(final Connection connection, final int id) {
+		trainService.freeConnection(connection, id);
+		wake(slot(connection));
+	}
+
+	private void freeLocation(final Location location, final int id) {
+		trainService.freeLocation(location, id);
+		wake(slot(location));
+	}
+
+	private void wake(final int slot) {
+		final var trains = waiting.get(slot);
+		for (final var train : trains)
+			schedule(train, 0);
+		trains.clear();
+	}
+
+	/**
+	 * The state machine of a single train, following the same steps as
+	 * {@link Train#run()}.
+	 */
+	private class EventTrain {
+		private final TrainSchedule trainSchedule;
+		private final int id;
+		private final AvoidSet empty;
+		private final AvoidSet alreadyTaken;
+		private Location currentLocation;
+		private boolean parking = false;
+		private State state = State.START;
+		private List<Connection> route;
+		private Connection travelling;
+
+		EventTrain(final TrainSchedule trainSchedule, final int id) {
+			this.trainSchedule = trainSchedule;
+			this.id = id;
+			this.currentLocation = trainSchedule.origin();
+			this.empty = new AvoidSet(map);
+			this.alreadyTaken = new AvoidSet(map);
+		}
+
+		void step() {
+			switch (state) {
+			case START:
+				record(new StartEvent(base + now, trainSchedule));
+				currentLocation.reserveParking();
+				route();
+				break;
+			case ROUTE:
+				route();
+				break;
+			case WAIT:
+				reserveParkingRoute();
+				break;
+			case ARRIVE:
+				arrive();
+				break;
+			}
+		}
+
+		/**
+		 * Reserves the shortest route, an alternative or a route to a parking place,
+		 * like one round of the loop in {@link Train#run()}.
+		 */
+		private void route() {
+			if (currentLocation.equals(trainSchedule.destination())) {
+				record(new FinishEvent(base + now, trainSchedule));
+				finished++;
+				return;
+			}
+
+			var next = router.route(currentLocation, trainSchedule.destination(), empty);
+			alreadyTaken.clear();
+			var isTaken = trainService.reserveRoute(next, currentLocation, id);
+			while (isTaken != null) {
+				alreadyTaken.add(isTaken);
+				next = router.route(currentLocation, trainSchedule.destination(), alreadyTaken);
+				if (next == null) {
+					route = findAndReserveParking(router.route(currentLocation, trainSchedule.destination(), empty));
+					reserveParkingRoute();
+					return;
+				}
+				isTaken = trainService.reserveRoute(next, currentLocation, id);
+			}
+			drive(next);
+		}
+
+		/**
+		 * Tries to reserve the route to the parking place, and waits for the
+		 * position in the way to be freed if that fails.
+		 */
+		private void reserveParkingRoute() {
+			final var blocking = trainService.reserveRoute(route, currentLocation, id);
+			if (blocking == null) {
+				drive(route);
+				return;
+			}
+			state = State.WAIT;
+			waiting.get(slot(blocking)).add(this);
+		}
+
+		private void drive(final List<Connection> connections) {
+			currentLocation.freeParking();
+			if (parking) {
+				record(new ResumeEvent(base + now, trainSchedule, currentLocation));
+				parking = false;
+			}
+			route = connections;
+			travel();
+		}
+
+		/**
+		 * Departs over the next connection of the route, or stops at its end.
+		 */
+		private void travel() {
+			if (route.isEmpty()) {
+				if (!currentLocation.isStation()) {
+					record(new PauseEvent(base + now, trainSchedule, currentLocation));
+					parking = true;
+				}
+				freeLocation(currentLocation, id);
+				state = State.ROUTE;
+				schedule(this, 0);
+				return;
+			}
+
+			travelling = route.remove(0);
+			record(new LeaveEvent(base + now, trainSchedule, currentLocation));
+			freeLocation(currentLocation, id);
+			record(new TravelEvent(base + now, trainSchedule, travelling));
+			state = State.ARRIVE;
+			schedule(this, timeScale.millis(travelling.time()));
+		}
+
+		private void arrive() {
+			currentLocation = travelling.first().equals(currentLocation) ? travelling.second() : travelling.first();
+			record(new ArriveEvent(base + now, trainSchedule, currentLocation));
+			freeConnection(travelling, id);
+			travelling = null;
+			travel();
+		}
+
+		/**
+		 * Cuts a route after the first location where a parking place can be
+		 * reserved, like {@code Train.findAndReserveParking}.
+		 */
+		private List<Connection> findAndReserveParking(final List<Connection> route) {
+			var location = currentLocation;
+			final var result = new LinkedList<Connection>();
+			for (final var connection : route) {
+				location = connection.first().equals(location) ? connection.second() : connection.first();
+				result.add(connection);
+				if (location.reserveParking())
+					return result;
+			}
+			throw new IllegalStateException("The route to the destination has no parking place!");
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package lockingTrains.impl;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Position;
+
+/**
+ * {@link ReservationTable} using the {@link Lock} of every connection and
+ * location. Reserved positions are locked by the thread of the train that
+ * reserved them, so only that train may free them again.
+ */
+class LockReservationTable extends ReservationTable {
+	LockReservationTable(final Map map) {
+		super(map);
+	}
+
+	@Override
+	Position tryReserve(final int[] connections, final int[] locations) {
+		for (int i = 0; i < connections.length; i++) {
+			if (!map.connections().get(connections[i]).getLock().tryLock()) {
+				//when one reservation fails, unlock all and return
+				for (int j = 0; j < i; j++)
+					freeConnection(connections[j]);
+				return map.connections().get(connections[i]);
+			}
+		}
+
+		for (int i = 0; i < locations.length; i++) {
+			if (!map.locations().get(locations[i]).getLock().tryLock()) {
+				for (final int connection : connections)
+					freeConnection(connection);
+				for (int j = 0; j < i; j++)
+					freeLocation(locations[j]);
+				return map.locations().get(locations[i]);
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	protected void releaseConnection(final int connection) {
+		map.connections().get(connection).getLock().unlock();
+	}
+
+	@Override
+	protected void releaseLocation(final int location) {
+		map.locations().get(location).getLock().unlock();
+	}
+
+	@Override
+	protected boolean isConnectionReserved(final int connection) {
+		return isLocked(map.connections().get(connection).getLock());
+	}
+
+	@Override
+	protected boolean isLocationReserved(final int location) {
+		return isLocked(map.locations().get(location).getLock());
+	}
+
+	private static boolean isLocked(final Lock lock) {
+		//positions always create a ReentrantLock
+		return ((ReentrantLock) lock).isLocked();
+	}
+}
@@ -0,0 +1,143 @@
+package lockingTrains.impl;
+
+import java.util.List;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+
+/**
+ * Conflict-free schedule for all trains of a problem, computed by the
+ * {@link Planner} before the simulation starts. Times are in milliseconds since
+ * the start of the simulation.
+ * <p>
+ * Real trains never keep to the planned times exactly, so the plan also fixes
+ * the order in which trains visit each position (numbered like in
+ * {@link PositionSubscriptions}). Executing the plan in that order is enough to
+ * stay conflict-free, see {@link VisitOrder}.
+ */
+class Plan {
+	private final List<List<Step>> steps;
+	private final int[][] order;
+	private final long makespan;
+	private final long planningMillis;
+
+	/**
+	 * A single travel over a connection, or a stay in a parking place.
+	 */
+	static class Step {
+		private final Connection connection;
+		private final Location location;
+		private final long start;
+		private final long end;
+
+		Step(final Connection connection, final Location location, final long start, final long end) {
+			this.connection = connection;
+			this.location = location;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Checks whether the train parks in this step.
+		 *
+		 * @return {@code true} if the train parks, {@code false} if it travels.
+		 */
+		boolean isParking() {
+			return connection == null;
+		}
+
+		/**
+		 * Get the connection travelled over.
+		 *
+		 * @return The connection, {@code null} when parking.
+		 */
+		Connection connection() {
+			return connection;
+		}
+
+		/**
+		 * Get the location travelled to, or parked at.
+		 *
+		 * @return The location.
+		 */
+		Location location() {
+			return location;
+		}
+
+		/**
+		 * Get the planned departure, or the time the train pauses.
+		 *
+		 * @return The start of the step.
+		 */
+		long start() {
+			return start;
+		}
+
+		/**
+		 * Get the planned arrival, or the time the train resumes.
+		 *
+		 * @return The end of the step.
+		 */
+		long end() {
+			return end;
+		}
+
+		@Override
+		public String toString() {
+			if (isParking())
+				return String.format("park at %s [%d, %d]", location, start, end);
+			return String.format("%s to %s [%d, %d]", connection, location, start, end);
+		}
+	}
+
+	Plan(final List<List<Step>> steps, final int[][] order, final long makespan, final long planningMillis) {
+		this.steps = steps;
+		this.order = order;
+		this.makespan = makespan;
+		this.planningMillis = planningMillis;
+	}
+
+	/**
+	 * Get the steps of a train.
+	 *
+	 * @param train index of the schedule in the problem.
+	 *
+	 * @return The steps from the origin to the destination of the train.
+	 */
+	List<Step> steps(final int train) {
+		return steps.get(train);
+	}
+
+	/**
+	 * Get the order in which trains visit each position.
+	 *
+	 * @return For each slot the schedule indices of the visiting trains.
+	 */
+	int[][] order() {
+		return order;
+	}
+
+	/**
+	 * Get the planned time until the last train arrives.
+	 *
+	 * @return The makespan in milliseconds.
+	 */
+	long makespan() {
+		return makespan;
+	}
+
+	/**
+	 * Get the time it took to compute the plan.
+	 *
+	 * @return The planning time in milliseconds.
+	 */
+	long planningMillis() {
+		return planningMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Plan(trains=%d, makespan=%d ms, planned in %d ms)", steps.size(), makespan,
+				planningMillis);
+	}
+}
@@ -0,0 +1,97 @@
+package lockingTrains.impl;
+
+import java.util.List;
+
+import lockingTrains.shared.Location;
+import lockingTrains.shared.TimeScale;
+import lockingTrains.shared.TrainSchedule;
+import lockingTrains.validation.Recorder;
+
+/**
+ * A train following its steps of a {@link Plan} instead of reserving routes
+ * itself. It keeps to the planned order on every position, not to the planned
+ * times, so it never waits longer than the trains before it need.
+ */
+class PlannedTrain extends Thread {
+	private final TrainSchedule schedule;
+	private final List<Plan.Step> steps;
+	private final Recorder recorder;
+	private final TimeScale timeScale;
+	private final VisitOrder visits;
+	private final int train;
+	private boolean error = false;
+
+	/**
+	 * @param schedule of the train.
+	 * @param train    index of the schedule in the problem.
+	 * @param plan     to follow.
+	 * @param visits   shared among all trains of the plan.
+	 * @param recorder  shared among all trains.
+	 * @param timeScale to travel by.
+	 */
+	PlannedTrain(final TrainSchedule schedule, final int train, final Plan plan, final VisitOrder visits,
+			final Recorder recorder, final TimeScale timeScale) {
+		this.schedule = schedule;
+		this.train = train;
+		this.steps = plan.steps(train);
+		this.visits = visits;
+		this.recorder = recorder;
+		this.timeScale = timeScale;
+	}
+
+	@Override
+	public void run() {
+		try {
+			recorder.start(schedule);
+			var location = schedule.origin();
+			for (final var step : steps) {
+				final int here = slot(location);
+				if (step.isParking()) {
+					recorder.pause(schedule, location);
+					visits.pass(here);
+					visits.enter(here, train);
+					recorder.resume(schedule, location);
+					continue;
+				}
+
+				final var connection = step.connection();
+				final int connectionSlot = visits.connectionSlot(connection.getRomanAndAntoineID());
+				visits.enter(connectionSlot, train);
+				visits.enter(slot(step.location()), train);
+
+				recorder.leave(schedule, location);
+				if (!location.isStation())
+					visits.pass(here);
+				recorder.travel(schedule, connection);
+				connection.travel(timeScale);
+				location = step.location();
+				recorder.arrive(schedule, location);
+				visits.pass(connectionSlot);
+				if (location.isStation())
+					visits.pass(slot(location));
+			}
+			recorder.finish(schedule);
+		} catch (Exception e) {
+			e.printStackTrace();
+			error = true;
+			visits.abort();
+		} catch (AssertionError e) {
+			System.out.println("AssertionError in train ");
+			error = true;
+			visits.abort();
+		}
+	}
+
+	private int slot(final Location location) {
+		return visits.locationSlot(location.getRomanAndAntoineID());
+	}
+
+	/**
+	 * Checks whether the train failed.
+	 *
+	 * @return {@code true} if an exception occurred.
+	 */
+	boolean isError() {
+		return error;
+	}
+}
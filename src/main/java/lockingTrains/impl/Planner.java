@@ -0,0 +1,340 @@
+package lockingTrains.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Problem;
+
+/**
+ * Plans conflict-free routes for all trains of a problem at once, instead of
+ * letting every train reserve its route on its own.
+ * <p>
+ * Trains are planned one after the other in the order of the schedules
+ * (prioritized planning). Each train takes the earliest arriving route around
+ * the trains planned before it, found with safe interval path planning: for
+ * every position, the planner keeps the time intervals it is busy, and a
+ * train may wait at a location as long as the location stays free. Waiting at
+ * stations is always possible, and at locations with a parking place the train
+ * may park to let others pass. A train can always wait at its origin until all
+ * trains before it are done, so every train gets a plan.
+ * <p>
+ * Positions are numbered like in {@link PositionSubscriptions}. A connection
+ * is busy while a train travels over it. A location is busy from the moment a
+ * train departs towards it, because only one train may head for it at a time,
+ * until the train arrives for stations, and until it leaves or parks for
+ * other locations. Intervals are closed and may not even touch.
+ */
+class Planner {
+	private final Map map;
+	private final int connections;
+	private final int[][] incident;
+	private final List<List<Interval>> busy;
+	private final List<List<Interval>> parked;
+
+	/**
+	 * A train using a position from {@code start} to {@code end}, both inclusive.
+	 */
+	private static class Interval {
+		final int train;
+		final long start;
+		final long end;
+
+		Interval(final int train, final long start, final long end) {
+			this.train = train;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * A train standing at a location, or arriving at it, within a free interval
+	 * of that location.
+	 */
+	private static class Node {
+		final int location;
+		final int gap;
+		final long time;
+		final long limit;
+		final Node parent;
+		final Connection connection;
+		final long departure;
+
+		/**
+		 * @param location   dense index of the location.
+		 * @param gap        index of the free interval, {@code -1} for stations.
+		 * @param time       of arrival, or resumption.
+		 * @param limit      latest time the train may leave again.
+		 * @param parent     the node the train came from.
+		 * @param connection travelled over from {@code parent}, {@code null} when
+		 *                   the train parked there.
+		 * @param departure  time the train left {@code parent}, or paused.
+		 */
+		Node(final int location, final int gap, final long time, final long limit, final Node parent,
+				final Connection connection, final long departure) {
+			this.location = location;
+			this.gap = gap;
+			this.time = time;
+			this.limit = limit;
+			this.parent = parent;
+			this.connection = connection;
+			this.departure = departure;
+		}
+
+		long key() {
+			return (long) location << 32 | gap + 1;
+		}
+	}
+
+	Planner(final Map map) {
+		this.map = map;
+		this.connections = map.connections().size();
+
+		final var degree = new int[map.locations().size()];
+		for (final var connection : map.connections()) {
+			if (connection.first().equals(connection.second()))
+				continue;
+			degree[connection.first().getRomanAndAntoineID()]++;
+			degree[connection.second().getRomanAndAntoineID()]++;
+		}
+		this.incident = new int[degree.length][];
+		for (int l = 0; l < degree.length; l++)
+			incident[l] = new int[degree[l]];
+		final var fill = new int[degree.length];
+		for (int i = 0; i < connections; i++) {
+			final var connection = map.connections().get(i);
+			if (connection.first().equals(connection.second()))
+				continue;
+			final int first = connection.first().getRomanAndAntoineID();
+			final int second = connection.second().getRomanAndAntoineID();
+			incident[first][fill[first]++] = i;
+			incident[second][fill[second]++] = i;
+		}
+
+		this.busy = new ArrayList<>(connections + degree.length);
+		for (int i = 0; i < connections + degree.length; i++)
+			busy.add(new ArrayList<>(2));
+		this.parked = new ArrayList<>(degree.length);
+		for (int i = 0; i < degree.length; i++)
+			parked.add(new ArrayList<>(0));
+	}
+
+	/**
+	 * Plans all trains of a problem on the map of this planner. A planner can only
+	 * be used once.
+	 *
+	 * @param problem to plan.
+	 *
+	 * @return The plan.
+	 */
+	Plan plan(final Problem problem) {
+		final long begin = System.nanoTime();
+		final var schedules = problem.schedules();
+		final var steps = new ArrayList<List<Plan.Step>>(schedules.size());
+		long makespan = 0;
+		for (int train = 0; train < schedules.size(); train++) {
+			final var schedule = schedules.get(train);
+			final var trainSteps = plan(train, schedule.origin(), schedule.destination());
+			commit(train, schedule.origin(), trainSteps);
+			steps.add(trainSteps);
+			if (!trainSteps.isEmpty())
+				makespan = Math.max(makespan, trainSteps.get(trainSteps.size() - 1).end());
+		}
+
+		final var order = new int[busy.size()][];
+		for (int slot = 0; slot < order.length; slot++) {
+			final var intervals = busy.get(slot);
+			order[slot] = new int[intervals.size()];
+			for (int i = 0; i < intervals.size(); i++)
+				order[slot][i] = intervals.get(i).train;
+		}
+		return new Plan(steps, order, makespan, (System.nanoTime() - begin) / 1_000_000);
+	}
+
+	/**
+	 * Finds the earliest arriving route of a train around all trains planned so
+	 * far.
+	 */
+	private List<Plan.Step> plan(final int train, final Location origin, final Location destination) {
+		final int target = destination.getRomanAndAntoineID();
+		final var queue = new PriorityQueue<Node>((a, b) -> Long.compare(a.time, b.time));
+		final var best = new HashMap<Long, Long>();
+
+		final var start = new Node(origin.getRomanAndAntoineID(), -1, 0, Long.MAX_VALUE, null, null, 0);
+		queue.add(start);
+		best.put(start.key(), 0L);
+		while (!queue.isEmpty()) {
+			final var node = queue.poll();
+			if (best.get(node.key()) < node.time)
+				continue;
+			if (node.location == target)
+				return steps(node);
+
+			for (final int connection : incident[node.location])
+				travel(node, map.connections().get(connection), queue, best);
+			park(node, queue, best);
+		}
+		throw new IllegalStateException(String.format("No route from %s to %s!", origin, destination));
+	}
+
+	private void travel(final Node node, final Connection connection, final PriorityQueue<Node> queue,
+			final HashMap<Long, Long> best) {
+		final var next = connection.first().getRomanAndAntoineID() == node.location ? connection.second()
+				: connection.first();
+		final int connectionSlot = connection.getRomanAndAntoineID();
+		final int nextSlot = connections + next.getRomanAndAntoineID();
+		final long time = connection.time();
+
+		if (next.isStation()) {
+			//a station is only busy while someone heads for it, the train can stay as long as it wants
+			long departure = node.time;
+			while (true) {
+				final long candidate = firstFree(nextSlot, firstFree(connectionSlot, departure, time), time);
+				if (candidate == departure)
+					break;
+				departure = candidate;
+			}
+			if (departure <= node.limit)
+				add(new Node(next.getRomanAndAntoineID(), -1, departure + time, Long.MAX_VALUE, node, connection,
+						departure), queue, best);
+			return;
+		}
+
+		final var intervals = busy.get(nextSlot);
+		for (int gap = 0; gap <= intervals.size(); gap++) {
+			final long gapEnd = gapEnd(intervals, gap);
+			if (gapEnd < node.time + time)
+				continue;
+
+			final long departure = firstFree(connectionSlot, Math.max(node.time, gapStart(intervals, gap)), time);
+			if (departure > node.limit)
+				break;
+			if (departure + time <= gapEnd)
+				add(new Node(next.getRomanAndAntoineID(), gap, departure + time, gapEnd, node, connection, departure),
+						queue, best);
+		}
+	}
+
+	/**
+	 * Parks the train right where it arrived and lets it resume at the start of a
+	 * later free interval of the location.
+	 */
+	private void park(final Node node, final PriorityQueue<Node> queue, final HashMap<Long, Long> best) {
+		final var location = map.locations().get(node.location);
+		if (location.isStation() || location.capacity() <= 0)
+			return;
+
+		final var intervals = busy.get(connections + node.location);
+		for (int gap = node.gap + 1; gap <= intervals.size(); gap++) {
+			final long resume = gapStart(intervals, gap);
+			if (resume > gapEnd(intervals, gap))
+				continue;
+			//a longer stay only needs more parking places
+			if (!parkingFree(location, node.time, resume))
+				break;
+			add(new Node(node.location, gap, resume, gapEnd(intervals, gap), node, null, node.time), queue, best);
+		}
+	}
+
+	private static void add(final Node node, final PriorityQueue<Node> queue, final HashMap<Long, Long> best) {
+		final var known = best.get(node.key());
+		if (known != null && known <= node.time)
+			return;
+		best.put(node.key(), node.time);
+		queue.add(node);
+	}
+
+	/**
+	 * Get the earliest time not before {@code from} at which a position is free
+	 * for {@code length} milliseconds.
+	 */
+	private long firstFree(final int slot, final long from, final long length) {
+		long start = from;
+		for (final var interval : busy.get(slot)) {
+			if (interval.end < start)
+				continue;
+			if (interval.start > start + length)
+				break;
+			start = interval.end + 1;
+		}
+		return start;
+	}
+
+	private static long gapStart(final List<Interval> intervals, final int gap) {
+		return gap == 0 ? Long.MIN_VALUE : intervals.get(gap - 1).end + 1;
+	}
+
+	private static long gapEnd(final List<Interval> intervals, final int gap) {
+		return gap == intervals.size() ? Long.MAX_VALUE : intervals.get(gap).start - 1;
+	}
+
+	/**
+	 * Checks whether one more train can park at a location from {@code from} to
+	 * {@code to}.
+	 */
+	private boolean parkingFree(final Location location, final long from, final long to) {
+		final var changes = new ArrayList<long[]>();
+		for (final var interval : parked.get(location.getRomanAndAntoineID())) {
+			if (interval.end < from || interval.start > to)
+				continue;
+			changes.add(new long[] { Math.max(interval.start, from), 1 });
+			changes.add(new long[] { interval.end + 1, -1 });
+		}
+		changes.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+		long count = 1;
+		for (final var change : changes) {
+			count += change[1];
+			if (count > location.capacity())
+				return false;
+		}
+		return true;
+	}
+
+	private List<Plan.Step> steps(final Node target) {
+		final var steps = new ArrayList<Plan.Step>();
+		for (var node = target; node.parent != null; node = node.parent)
+			steps.add(new Plan.Step(node.connection, map.locations().get(node.location), node.departure, node.time));
+		Collections.reverse(steps);
+		return steps;
+	}
+
+	/**
+	 * Marks the positions used by the steps of a train as busy.
+	 */
+	private void commit(final int train, final Location origin, final List<Plan.Step> steps) {
+		var location = origin;
+		long occupied = 0;
+		for (final var step : steps) {
+			if (step.isParking()) {
+				insert(busy.get(connections + location.getRomanAndAntoineID()),
+						new Interval(train, occupied, step.start()));
+				insert(parked.get(location.getRomanAndAntoineID()), new Interval(train, step.start(), step.end()));
+				occupied = step.end();
+				continue;
+			}
+
+			if (!location.isStation())
+				insert(busy.get(connections + location.getRomanAndAntoineID()),
+						new Interval(train, occupied, step.start()));
+			insert(busy.get(step.connection().getRomanAndAntoineID()), new Interval(train, step.start(), step.end()));
+			location = step.location();
+			if (location.isStation())
+				insert(busy.get(connections + location.getRomanAndAntoineID()),
+						new Interval(train, step.start(), step.end()));
+			occupied = step.start();
+		}
+	}
+
+	private static void insert(final List<Interval> intervals, final Interval interval) {
+		int index = intervals.size();
+		while (index > 0 && intervals.get(index - 1).start > interval.start)
+			index--;
+		intervals.add(index, interval);
+	}
+}
@@ -0,0 +1,176 @@
+package lockingTrains.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import lockingTrains.shared.Map;
+
+/**
+ * Lets trains wait for a specific connection or location to be freed. Freeing a
+ * position wakes exactly the trains subscribed to it, nobody else.
+ * <p>
+ * Positions are addressed like in {@link ReservationTable}: connection
+ * {@code i} is slot {@code i}, location {@code i} is slot
+ * {@code connections + i}. Each slot holds an immutable array of subscriptions
+ * that is replaced with compare-and-set, so notifying a position nobody waits
+ * for is a single volatile read.
+ * <p>
+ * To not miss a notification, a train has to subscribe first and check whether
+ * the position is still reserved afterwards:
+ *
+ * <pre>
+ * final var subscription = subscriptions.subscribe(slot);
+ * if (isReserved(slot))
+ * 	subscription.await();
+ * else
+ * 	subscription.cancel();
+ * </pre>
+ */
+class PositionSubscriptions {
+	private final int connections;
+	private final AtomicReferenceArray<Subscription[]> slots;
+
+	PositionSubscriptions(final Map map) {
+		this.connections = map.connections().size();
+		this.slots = new AtomicReferenceArray<>(connections + map.locations().size());
+	}
+
+	/**
+	 * Get the slot of a connection.
+	 *
+	 * @param connection index of the connection.
+	 *
+	 * @return The slot to subscribe to.
+	 */
+	int connectionSlot(final int connection) {
+		return connection;
+	}
+
+	/**
+	 * Get the slot of a location.
+	 *
+	 * @param location index of the location.
+	 *
+	 * @return The slot to subscribe to.
+	 */
+	int locationSlot(final int location) {
+		return connections + location;
+	}
+
+	/**
+	 * Subscribes the calling thread to a position.
+	 *
+	 * @param slot of the position.
+	 *
+	 * @return The new subscription, to {@link Subscription#await await} or
+	 *         {@link Subscription#cancel cancel}.
+	 */
+	Subscription subscribe(final int slot) {
+		final var subscription = new Subscription(slot);
+		while (true) {
+			final var current = slots.get(slot);
+			final var next = current == null ? new Subscription[1] : Arrays.copyOf(current, current.length + 1);
+			next[next.length - 1] = subscription;
+			if (slots.compareAndSet(slot, current, next))
+				return subscription;
+		}
+	}
+
+	/**
+	 * Wakes up all threads subscribed to a position and removes their
+	 * subscriptions. Must be called after the position was released.
+	 *
+	 * @param slot of the freed position.
+	 */
+	void freed(final int slot) {
+		if (slots.get(slot) == null)
+			return;
+
+		final var subscribers = slots.getAndSet(slot, null);
+		if (subscribers != null) {
+			for (final var subscription : subscribers)
+				subscription.fire();
+		}
+	}
+
+	/**
+	 * Get the number of threads currently subscribed to a position.
+	 *
+	 * @param slot of the position.
+	 *
+	 * @return The number of subscriptions.
+	 */
+	int subscribers(final int slot) {
+		final var current = slots.get(slot);
+		return current == null ? 0 : current.length;
+	}
+
+	/**
+	 * A single thread waiting for a single position to be freed.
+	 */
+	class Subscription {
+		private final int slot;
+		private final Thread owner = Thread.currentThread();
+		private volatile boolean fired;
+
+		private Subscription(final int slot) {
+			this.slot = slot;
+		}
+
+		private void fire() {
+			fired = true;
+			LockSupport.unpark(owner);
+		}
+
+		/**
+		 * Waits until the position is freed. Interrupts do not end the wait, but are
+		 * kept for the caller.
+		 */
+		void await() {
+			boolean interrupted = false;
+			while (!fired) {
+				LockSupport.park(this);
+				if (Thread.interrupted())
+					interrupted = true;
+			}
+			if (interrupted)
+				owner.interrupt();
+		}
+
+		/**
+		 * Withdraws the subscription if it has not fired yet.
+		 */
+		void cancel() {
+			while (!fired) {
+				final var current = slots.get(slot);
+				if (current == null)
+					return;
+
+				int index = 0;
+				while (index < current.length && current[index] != this)
+					index++;
+				if (index == current.length)
+					return;
+
+				Subscription[] next = null;
+				if (current.length > 1) {
+					next = new Subscription[current.length - 1];
+					System.arraycopy(current, 0, next, 0, index);
+					System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+				}
+				if (slots.compareAndSet(slot, current, next))
+					return;
+			}
+		}
+
+		/**
+		 * Checks whether the position has been freed since subscribing.
+		 *
+		 * @return {@code true} if the subscription has fired.
+		 */
+		boolean isFired() {
+			return fired;
+		}
+	}
+}
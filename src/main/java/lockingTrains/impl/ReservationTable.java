@@ -0,0 +1,139 @@
+package lockingTrains.impl;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Position;
+
+/**
+ * Keeps track of which connections and locations of a map are reserved by a
+ * train. Positions are addressed by their dense index within the map (see
+ * {@link lockingTrains.shared.Location#getRomanAndAntoineID()}).
+ * <p>
+ * All methods may be called concurrently. Callers must pass the indices of a
+ * route sorted in ascending order, connections before locations.
+ * <p>
+ * A train that has to wait for a route never holds part of it: it subscribes
+ * to the position that blocked it (see {@link PositionSubscriptions}) and tries
+ * to reserve the whole route again once exactly that position is freed.
+ */
+abstract class ReservationTable {
+	protected final Map map;
+	private final PositionSubscriptions subscriptions;
+
+	protected ReservationTable(final Map map) {
+		this.map = map;
+		this.subscriptions = new PositionSubscriptions(map);
+	}
+
+	/**
+	 * Reserves all given positions, or none of them.
+	 *
+	 * @param connections sorted indices of the connections to reserve.
+	 * @param locations   sorted indices of the locations to reserve.
+	 *
+	 * @return {@code null} on success, otherwise the first position (in the order
+	 *         given) that is already reserved.
+	 */
+	abstract Position tryReserve(int[] connections, int[] locations);
+
+	/**
+	 * Reserves all given positions at once, waiting until none of them is
+	 * reserved by another train. Nothing is held while waiting.
+	 *
+	 * @param connections sorted indices of the connections to reserve.
+	 * @param locations   sorted indices of the locations to reserve.
+	 */
+	void reserve(final int[] connections, final int[] locations) {
+		while (true) {
+			final var blocking = tryReserve(connections, locations);
+			if (blocking == null)
+				return;
+			awaitFree(blocking);
+		}
+	}
+
+	/**
+	 * Waits until a position is not reserved anymore. Returns at once if it has
+	 * been freed in the meantime.
+	 */
+	private void awaitFree(final Position position) {
+		final boolean isConnection = position instanceof Connection;
+		final int index = isConnection ? ((Connection) position).getRomanAndAntoineID()
+				: ((Location) position).getRomanAndAntoineID();
+
+		final var subscription = subscriptions
+				.subscribe(isConnection ? subscriptions.connectionSlot(index) : subscriptions.locationSlot(index));
+		if (isConnection ? isConnectionReserved(index) : isLocationReserved(index))
+			subscription.await();
+		else
+			subscription.cancel();
+	}
+
+	/**
+	 * Wakes up the trains waiting for a position that has just been released.
+	 * Implementations must call this when rolling back a failed
+	 * {@link #tryReserve tryReserve}, as another train may already wait for a
+	 * position that was only reserved for a moment.
+	 *
+	 * @param isConnection whether the position is a connection.
+	 * @param index        index of the position.
+	 */
+	protected final void wake(final boolean isConnection, final int index) {
+		subscriptions.freed(isConnection ? subscriptions.connectionSlot(index) : subscriptions.locationSlot(index));
+	}
+
+	/**
+	 * Releases the reservation of a connection and wakes up the trains waiting
+	 * for it.
+	 *
+	 * @param connection index of the connection.
+	 */
+	final void freeConnection(final int connection) {
+		releaseConnection(connection);
+		wake(true, connection);
+	}
+
+	/**
+	 * Releases the reservation of a location and wakes up the trains waiting for
+	 * it.
+	 *
+	 * @param location index of the location.
+	 */
+	final void freeLocation(final int location) {
+		releaseLocation(location);
+		wake(false, location);
+	}
+
+	/**
+	 * Releases the reservation of a connection.
+	 *
+	 * @param connection index of the connection.
+	 */
+	protected abstract void releaseConnection(int connection);
+
+	/**
+	 * Releases the reservation of a location.
+	 *
+	 * @param location index of the location.
+	 */
+	protected abstract void releaseLocation(int location);
+
+	/**
+	 * Checks whether a connection is currently reserved.
+	 *
+	 * @param connection index of the connection.
+	 *
+	 * @return {@code true} if it is reserved.
+	 */
+	protected abstract boolean isConnectionReserved(int connection);
+
+	/**
+	 * Checks whether a location is currently reserved.
+	 *
+	 * @param location index of the location.
+	 *
+	 * @return {@code true} if it is reserved.
+	 */
+	protected abstract boolean isLocationReserved(int location);
+}
@@ -2,15 +2,22 @@ package lockingTrains.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Condition;
+import java.util.function.IntPredicate;
 
 import lockingTrains.shared.*;
 import lockingTrains.shared.io.Parser;
-import lockingTrains.validation.CatRecorder;
+import lockingTrains.validation.AsyncRecorder;
 import lockingTrains.validation.Logger;
+import lockingTrains.validation.EventLogWriter;
 import lockingTrains.validation.Recorder;
-import lockingTrains.validation.Validator;
+import lockingTrains.validation.IndexedValidator;
 
 /**
  * This is the starting point of your implementation. Feel free to add
@@ -18,6 +25,17 @@ import lockingTrains.validation.Validator;
  * before changing them.
  */
 public class Simulator {
+	/**
+	 * Number of routes the {@link RouteCache} of a simulation run keeps.
+	 */
+	private static final int ROUTE_CACHE_CAPACITY = 4096;
+
+	/**
+	 * Largest set of positions to avoid that routes are cached for. Trains retry
+	 * reservations with growing avoid sets, small ones repeat often.
+	 */
+	private static final int ROUTE_CACHE_MAX_AVOID = 4;
+
 	private Simulator() {
 	}
 
@@ -25,24 +43,38 @@ public class Simulator {
 	 * Entrypoint for the simulator application.
 	 *
 	 * You may extend this (although you should not need to), but <strong>you must
-	 * continue supporting the already implemented call scheme</strong>.
+	 * continue supporting the already implemented call scheme</strong>. Given a
+	 * third file, the events are archived there in binary, see
+	 * {@link EventLogWriter}, instead of being printed.
 	 *
 	 * @param args the command line arguments.
 	 *
 	 * @throws IOException if an error occurs while reading the input files.
 	 */
 	public static void main(String[] args) throws IOException {
-		if (args.length != 2) {
-			System.out.println("Usage: <command> <map file> <problem file>");
+		if (args.length != 2 && args.length != 3) {
+			System.out.println("Usage: <command> <map file> <problem file> [<event log file>]");
 			System.exit(1);
 		}
 
 		final var problem = Parser.parse(new File(args[0]), new File(args[1]));
-		final var logger = new Logger();
-
-		final boolean result = run(problem, new CatRecorder(List.of(logger, new Validator(problem))));
-
-		logger.eventLog().forEach(System.out::println);
+		final var options = SimulatorOptions.fromSystemProperties().report(System.err::println);
+		//the validator has to expect arrivals at the speed the trains travel
+		final var validator = new IndexedValidator(problem, options.timeScale());
+		final boolean result;
+		if (args.length == 3) {
+			try (final var writer = new EventLogWriter(Paths.get(args[2]), problem);
+					final var recorder = new AsyncRecorder(List.of(writer, validator))) {
+				result = run(problem, recorder, options);
+			}
+		} else {
+			//the recorder delivers all events on its own thread, so there is nothing to gain from buffers per thread
+			final var logger = new Logger();
+			try (final var recorder = new AsyncRecorder(List.of(logger, validator))) {
+				result = run(problem, recorder, options);
+			}
+			logger.eventLog().forEach(System.out::println);
+		}
 
 		if (!result)
 			System.exit(1);
@@ -61,6 +93,20 @@ public class Simulator {
 	 * @return {@code true} if the simulation ran successfully.
 	 */
 	public static boolean run(final Problem problem, final Recorder recorder) {
+		return run(problem, recorder, SimulatorOptions.fromSystemProperties());
+	}
+
+	/**
+	 * Runs the entire problem simulation like {@link #run(Problem, Recorder)}, but
+	 * with explicitly given {@link SimulatorOptions}.
+	 *
+	 * @param problem  the problem to simulate.
+	 * @param recorder the recorder instance to call.
+	 * @param options  how to run the simulation.
+	 *
+	 * @return {@code true} if the simulation ran successfully.
+	 */
+	public static boolean run(final Problem problem, final Recorder recorder, final SimulatorOptions options) {
 		//get map and schedule from problem
 		List<TrainSchedule> schedules = problem.schedules();
 
@@ -79,39 +125,33 @@ public class Simulator {
 				return false;
 			}
 		}
-		//initialize locations & connections
-		int ourID = 0;
-		for( Location l : map.locations()) {
-			l.setRomanAndAntoineID(ourID);
-			ourID++;
-		}
-		ourID = 0;
-		for (Connection c : map.connections()) {
-			c.setRomanAndAntoineID(ourID);
-			ourID++;
-		}
+		if (options.mode() == SimulatorOptions.Mode.PLANNED)
+			return runPlanned(problem, recorder, options);
+
+		//locations & connections already carry their dense ids, the map assigns them on construction
+		final Router router = router(map, options);
 
+		if (options.mode() == SimulatorOptions.Mode.EVENTS)
+			return new EventSimulator(problem, recorder, router, options.timeScale()).run();
 
 		//start a new TS and a new train array the size of schedule
-		TrainService trainService = new TrainService(map);
+		TrainService trainService;
+		if (options.reservations() == SimulatorOptions.Reservations.TIMED)
+			trainService = new TimedTrainService(map, options.reservationWindow(), router, options.timeScale());
+		else if (options.reservations() == SimulatorOptions.Reservations.ATOMIC)
+			trainService = new TrainService(new AtomicReservationTable(map), options.reservationWindow(), router,
+					options.timeScale());
+		else
+			trainService = new TrainService(new LockReservationTable(map), options.reservationWindow(), router,
+					options.timeScale());
 		Train[] trains = new Train[schedules.size()];
 		//init individual trains with the map and their corresponding schedule
 		for (int i = 0; i < schedules.size(); i++) {
 			trains[i] = new Train(schedules.get(i), recorder, map, trainService);
-			//start our train-threads
-			trains[i].start();
-			//	print("started one train "+ i);
-		}
-		//call .join() on each train to force Simulator to wait for all trains to finish
-		for (int i = 0; i < schedules.size(); i++) {
-			try {
-				trains[i].join();
-				if(trains[i].isError()) return false;
-			} catch (Exception e) {
-				print("Simulation interrupted because of an Exception in train execution");
-				return false;
-			}
 		}
+		//start our train-threads and wait for all trains to finish
+		if (!runTrains(trains, i -> trains[i].isError(), options))
+			return false;
 		//when all trains finish from .join() we tell rc that we're done
 		try {
 			recorder.done();
@@ -126,6 +166,150 @@ public class Simulator {
 		}
 		return true;
 	}
+
+	/**
+	 * Sets up the router for a single simulation run. The router of the map is
+	 * not replaced, so it does not keep the precomputed data of one run for the
+	 * next, which may use other options.
+	 *
+	 * @param map     to route on.
+	 * @param options whether to precompute a routing table or a contraction
+	 *                hierarchy.
+	 *
+	 * @return The router the trains of the run use.
+	 */
+	private static Router router(final Map map, final SimulatorOptions options) {
+		Router router = map.router();
+		//a cache set up by the caller is used as it is
+		if (router instanceof RouteCache)
+			return router;
+		//pay the all-pairs precomputation once instead of searching per train and retry
+		if (map.locations().size() <= options.routingTableLimit()) {
+			final var table = new RoutingTable(map, router);
+			report(options, table);
+			router = table;
+		} else if (options.contractionHierarchyMinimum() > 0
+				&& map.locations().size() >= options.contractionHierarchyMinimum()) {
+			//too large for a table, but the hierarchy still answers unobstructed queries fast
+			final var hierarchy = new ContractionHierarchy(map, router);
+			report(options, hierarchy);
+			router = hierarchy;
+		}
+		//trains sharing origin and destination ask for the same routes over and over
+		return new RouteCache(map, router, ROUTE_CACHE_CAPACITY, ROUTE_CACHE_MAX_AVOID);
+	}
+
+	/**
+	 * Plans all trains up front and lets them execute the plan.
+	 *
+	 * @param problem  the problem to simulate.
+	 * @param recorder the recorder instance to call.
+	 * @param options  how to run the trains.
+	 *
+	 * @return {@code true} if the simulation ran successfully.
+	 */
+	private static boolean runPlanned(final Problem problem, final Recorder recorder,
+			final SimulatorOptions options) {
+		final var schedules = problem.schedules();
+		final Plan plan;
+		try {
+			plan = new Planner(problem.map()).plan(problem);
+		} catch (IllegalStateException e) {
+			print(e.getMessage());
+			return false;
+		}
+		report(options, plan);
+
+		final var visits = new VisitOrder(problem.map(), plan);
+		final var trains = new PlannedTrain[schedules.size()];
+		for (int i = 0; i < schedules.size(); i++)
+			trains[i] = new PlannedTrain(schedules.get(i), i, plan, visits, recorder, options.timeScale());
+		if (!runTrains(trains, i -> trains[i].isError(), options))
+			return false;
+
+		try {
+			recorder.done();
+		} catch (Exception | AssertionError e) {
+			print("error while calling recorder.done, everything else fine");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs all trains and waits for them in order, giving up at the first one
+	 * that failed. Without an executor in the options, every train runs as a
+	 * thread of its own.
+	 *
+	 * @param trains  to run, they must not have been started.
+	 * @param failed  whether the train with the given index failed.
+	 * @param options what to run the trains on.
+	 *
+	 * @return {@code true} if all trains finished without failing.
+	 */
+	private static boolean runTrains(final Thread[] trains, final IntPredicate failed,
+			final SimulatorOptions options) {
+		Executor executor = options.executor();
+		ExecutorService owned = null;
+		if (executor == null && options.threads() == SimulatorOptions.Threads.VIRTUAL)
+			executor = owned = virtualThreadExecutor();
+
+		try {
+			final var finished = new CompletableFuture<?>[trains.length];
+			for (int i = 0; i < trains.length; i++) {
+				if (executor == null)
+					trains[i].start();
+				else
+					finished[i] = CompletableFuture.runAsync(trains[i], executor);
+			}
+
+			for (int i = 0; i < trains.length; i++) {
+				try {
+					if (executor == null)
+						trains[i].join();
+					else
+						finished[i].join();
+					if (failed.test(i))
+						return false;
+				} catch (Exception e) {
+					print("Simulation interrupted because of an Exception in train execution");
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			if (owned != null)
+				owned.shutdown();
+		}
+	}
+
+	/**
+	 * Creates an executor starting a virtual thread per task. Virtual threads are
+	 * looked up reflectively, as the simulator is built for Java 10.
+	 *
+	 * @return The executor, or a cached thread pool on runtimes without virtual
+	 *         threads.
+	 */
+	private static ExecutorService virtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			System.err.println("Virtual threads need Java 21, using a cached thread pool instead");
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Passes what a run precomputed on to the report of the options, if any.
+	 *
+	 * @param options whose report to use.
+	 * @param result  to report.
+	 */
+	private static void report(final SimulatorOptions options, final Object result) {
+		if (options.report() != null)
+			options.report().accept(result.toString());
+	}
+
 	private static void print(String str) {
 		System.out.println(str);
 	}
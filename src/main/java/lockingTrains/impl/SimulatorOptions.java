@@ -0,0 +1,367 @@
+package lockingTrains.impl;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import lockingTrains.shared.TimeScale;
+
+/**
+ * Tuning knobs of the {@link Simulator}. None of them changes what is simulated,
+ * only how. Every option can be preset with a system property named
+ * {@code lockingTrains.<option>}, e.g. {@code -DlockingTrains.routingTableLimit=2000}.
+ */
+public class SimulatorOptions {
+	private static final String PREFIX = "lockingTrains.";
+
+	/**
+	 * How trains find their way through the map.
+	 */
+	public enum Mode {
+		/**
+		 * Every train is a thread routing and reserving on its own.
+		 */
+		THREADED,
+
+		/**
+		 * A {@link Planner} computes conflict-free routes for all trains up front, the
+		 * trains only execute them.
+		 */
+		PLANNED,
+
+		/**
+		 * Trains act like in {@link #THREADED} mode, but an {@link EventSimulator}
+		 * runs them on a virtual clock in a single thread.
+		 */
+		EVENTS
+	}
+
+	/**
+	 * How the {@link TrainService} keeps track of reserved positions.
+	 */
+	public enum Reservations {
+		/**
+		 * One {@link java.util.concurrent.locks.Lock} per connection and location.
+		 */
+		LOCKS,
+
+		/**
+		 * A single atomic bitmap over all connections and locations.
+		 */
+		ATOMIC,
+
+		/**
+		 * Reservations for the time interval a train plans to use a position only.
+		 */
+		TIMED
+	}
+
+	/**
+	 * What the train threads run on, unless an {@link #executor(Executor)
+	 * executor} is given.
+	 */
+	public enum Threads {
+		/**
+		 * One platform thread per train.
+		 */
+		PLATFORM,
+
+		/**
+		 * One virtual thread per train. Needs Java 21, older runtimes use a cached
+		 * thread pool instead.
+		 */
+		VIRTUAL
+	}
+
+	private Mode mode = Mode.THREADED;
+	private Threads threads = Threads.PLATFORM;
+	private Executor executor = null;
+	private Consumer<String> report = null;
+	private int routingTableLimit = 0;
+	private int contractionHierarchyMinimum = 0;
+	private Reservations reservations = Reservations.LOCKS;
+	private int reservationWindow = 0;
+	private TimeScale timeScale = TimeScale.REAL;
+
+	/**
+	 * Reads the options from the system properties, using the defaults for unset
+	 * ones.
+	 *
+	 * @return The options given on the command line.
+	 *
+	 * @throws IllegalArgumentException if a property cannot be parsed.
+	 */
+	public static SimulatorOptions fromSystemProperties() {
+		final var options = new SimulatorOptions();
+		options.mode(enumProperty("mode", options.mode));
+		options.threads(enumProperty("threads", options.threads));
+		options.routingTableLimit(intProperty("routingTableLimit", options.routingTableLimit));
+		options.contractionHierarchyMinimum(
+				intProperty("contractionHierarchyMinimum", options.contractionHierarchyMinimum));
+		options.reservations(enumProperty("reservations", options.reservations));
+		options.reservationWindow(intProperty("reservationWindow", options.reservationWindow));
+		options.timeScale(doubleProperty("timeScale", options.timeScale.factor()));
+		return options;
+	}
+
+	private static int intProperty(final String name, final int defaultValue) {
+		final String value = System.getProperty(PREFIX + name);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("\"%s\" is not a valid value for %s%s!", value, PREFIX, name));
+		}
+	}
+
+	private static double doubleProperty(final String name, final double defaultValue) {
+		final String value = System.getProperty(PREFIX + name);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("\"%s\" is not a valid value for %s%s!", value, PREFIX, name));
+		}
+	}
+
+	private static <E extends Enum<E>> E enumProperty(final String name, final E defaultValue) {
+		final String value = System.getProperty(PREFIX + name);
+		if (value == null)
+			return defaultValue;
+
+		try {
+			return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("\"%s\" is not a valid value for %s%s!", value, PREFIX, name));
+		}
+	}
+
+	/**
+	 * Get how trains find their way. Defaults to {@link Mode#THREADED}.
+	 *
+	 * @return The simulation mode.
+	 */
+	public Mode mode() {
+		return mode;
+	}
+
+	/**
+	 * Sets how trains find their way. In {@link Mode#PLANNED} mode, the options
+	 * about routing and reservations have no effect. In {@link Mode#EVENTS} mode,
+	 * only those about routing do.
+	 *
+	 * @param mode the simulation mode.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions mode(final Mode mode) {
+		this.mode = mode;
+		return this;
+	}
+
+	/**
+	 * Get what the trains run on. Defaults to {@link Threads#PLATFORM}.
+	 *
+	 * @return The kind of threads.
+	 */
+	public Threads threads() {
+		return threads;
+	}
+
+	/**
+	 * Sets what the trains run on. Trains wait for reservations without holding
+	 * a monitor, so on virtual threads a waiting train does not block a carrier
+	 * thread.
+	 *
+	 * @param threads the kind of threads.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions threads(final Threads threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Get the executor the trains run on. Defaults to {@code null}, i.e. one
+	 * thread per train as given by {@link #threads()}.
+	 *
+	 * @return The executor, or {@code null}.
+	 */
+	public Executor executor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor the trains run on instead of threads of their own. Trains
+	 * wait for each other, so the executor must not run fewer trains at once
+	 * than there are, e.g. no fixed thread pool. It is not shut down by the
+	 * simulation and cannot be set with a system property.
+	 *
+	 * @param executor to run the trains on, {@code null} for {@link #threads()}.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions executor(final Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Get where the simulation reports what it precomputed. Defaults to
+	 * {@code null}, i.e. nothing is reported.
+	 *
+	 * @return The report consumer, or {@code null}.
+	 */
+	public Consumer<String> report() {
+		return report;
+	}
+
+	/**
+	 * Sets where the simulation reports what it precomputed before the trains
+	 * start, i.e. the size and build time of a routing table or contraction
+	 * hierarchy and the plan of {@link Mode#PLANNED} mode. It cannot be set with
+	 * a system property.
+	 *
+	 * @param report to pass the reports to, {@code null} to report nothing.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions report(final Consumer<String> report) {
+		this.report = report;
+		return this;
+	}
+
+	/**
+	 * Get the largest number of map locations for which an all-pairs
+	 * {@link lockingTrains.shared.RoutingTable} is precomputed. Defaults to
+	 * {@code 0}, i.e. no table.
+	 *
+	 * @return The location limit of the routing table.
+	 */
+	public int routingTableLimit() {
+		return routingTableLimit;
+	}
+
+	/**
+	 * Sets the largest number of map locations for which an all-pairs
+	 * {@link lockingTrains.shared.RoutingTable} is precomputed when the simulation
+	 * starts. The table needs {@code 4 * n * n} bytes for {@code n} locations.
+	 *
+	 * @param routingTableLimit the location limit, {@code 0} to disable.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions routingTableLimit(final int routingTableLimit) {
+		this.routingTableLimit = routingTableLimit;
+		return this;
+	}
+
+	/**
+	 * Get the smallest number of map locations for which a
+	 * {@link lockingTrains.shared.ContractionHierarchy} is built. Defaults to
+	 * {@code 0}, i.e. no hierarchy.
+	 *
+	 * @return The location minimum of the contraction hierarchy.
+	 */
+	public int contractionHierarchyMinimum() {
+		return contractionHierarchyMinimum;
+	}
+
+	/**
+	 * Sets the smallest number of map locations for which a
+	 * {@link lockingTrains.shared.ContractionHierarchy} is built when the
+	 * simulation starts. Maps small enough for a routing table get the table
+	 * instead.
+	 *
+	 * @param contractionHierarchyMinimum the location minimum, {@code 0} to
+	 *                                    disable.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions contractionHierarchyMinimum(final int contractionHierarchyMinimum) {
+		this.contractionHierarchyMinimum = contractionHierarchyMinimum;
+		return this;
+	}
+
+	/**
+	 * Get how reserved positions are tracked. Defaults to
+	 * {@link Reservations#LOCKS}.
+	 *
+	 * @return The kind of reservation table.
+	 */
+	public Reservations reservations() {
+		return reservations;
+	}
+
+	/**
+	 * Sets how reserved positions are tracked.
+	 *
+	 * @param reservations the kind of reservation table.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions reservations(final Reservations reservations) {
+		this.reservations = reservations;
+		return this;
+	}
+
+	/**
+	 * Get the number of connections a train reserves ahead of itself. Defaults to
+	 * {@code 0}, i.e. whole routes.
+	 *
+	 * @return The size of the reservation window.
+	 */
+	public int reservationWindow() {
+		return reservationWindow;
+	}
+
+	/**
+	 * Sets the number of connections a train reserves ahead of itself. With a
+	 * positive window, a train reserves the next {@code reservationWindow}
+	 * connections of its route and continues to the next location where it can
+	 * reserve a parking place. Before reaching the end of that window, it tries
+	 * to reserve the next one, and parks there if it cannot.
+	 *
+	 * @param reservationWindow the window size, {@code 0} to reserve whole routes.
+	 *
+	 * @return These options.
+	 */
+	public SimulatorOptions reservationWindow(final int reservationWindow) {
+		this.reservationWindow = reservationWindow;
+		return this;
+	}
+
+	/**
+	 * Get the time scale travel times are scaled with. Defaults to
+	 * {@link TimeScale#REAL}.
+	 *
+	 * @return The time scale.
+	 */
+	public TimeScale timeScale() {
+		return timeScale;
+	}
+
+	/**
+	 * Sets the factor travel times are scaled with while the simulation runs, see
+	 * {@link TimeScale}. E.g. {@code 0.001} lets trains travel a thousand times
+	 * faster, but still concurrently. In {@link Mode#EVENTS} mode, the virtual
+	 * clock advances by the scaled times. A validator recording the run has to be
+	 * created with the same time scale, as it expects arrivals by the scaled
+	 * times.
+	 *
+	 * @param timeScale the time scale factor.
+	 *
+	 * @return These options.
+	 *
+	 * @throws IllegalArgumentException if the factor is not positive.
+	 */
+	public SimulatorOptions timeScale(final double timeScale) {
+		this.timeScale = new TimeScale(timeScale);
+		return this;
+	}
+}
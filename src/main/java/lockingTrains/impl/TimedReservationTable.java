@@ -0,0 +1,287 @@
+package lockingTrains.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Position;
+import lockingTrains.shared.TimeScale;
+
+/**
+ * Space-time reservations: instead of holding a position until it is freed, a
+ * train reserves each position of its route only for the time interval it
+ * plans to occupy it, computed from the current time and
+ * {@link Connection#time()}, scaled by the {@link TimeScale} of the run. Other
+ * trains may reserve the same position before or after that interval.
+ * Intervals that merely touch count as a conflict.
+ * <p>
+ * Trains are usually a little late, so they do not wait for the intervals
+ * themselves. What keeps trains apart is that a train has to {@link #enter
+ * enter} positions right before it uses them, only up to the next place where
+ * it can stop, and holds them until it {@link #free frees} them while driving.
+ * Positions further ahead stay free for the trains planned there earlier. If a
+ * train cannot enter the next part of its route, it parks and {@link #release
+ * releases} its location, so it holds nothing while it waits. A train that
+ * holds positions never waits for another one, so there are no cycles of
+ * waiting trains. Entering a position also moves the interval of the train back
+ * to the current time, so nobody can be planned before it anymore.
+ */
+class TimedReservationTable {
+	/**
+	 * Time a train is planned to stand at each location on both sides of its
+	 * arrival, to absorb small delays.
+	 */
+	static final long SLACK_MILLIS = 5;
+
+	/**
+	 * Returned by {@link #tryEnter} on success.
+	 */
+	static final int NONE = -1;
+
+	private final Map map;
+	private final TimeScale timeScale;
+	private final int connections;
+	private final List<List<Interval>> slots;
+	private final int[] holders;
+	private final PositionSubscriptions subscriptions;
+
+	/**
+	 * The time a train plans to occupy a position.
+	 */
+	private static class Interval {
+		final int train;
+		final long start;
+		final long end;
+
+		Interval(final int train, final long start, final long end) {
+			this.train = train;
+			this.start = start;
+			this.end = end;
+		}
+
+		boolean overlaps(final long otherStart, final long otherEnd) {
+			return start <= otherEnd && otherStart <= end;
+		}
+	}
+
+	TimedReservationTable(final Map map, final TimeScale timeScale) {
+		this.map = map;
+		this.timeScale = timeScale;
+		this.connections = map.connections().size();
+		this.subscriptions = new PositionSubscriptions(map);
+		this.slots = new ArrayList<>(connections + map.locations().size());
+		for (int i = 0; i < connections + map.locations().size(); i++)
+			slots.add(new ArrayList<>(2));
+		this.holders = new int[connections + map.locations().size()];
+		Arrays.fill(holders, NONE);
+	}
+
+	int slot(final Connection connection) {
+		return subscriptions.connectionSlot(connection.getRomanAndAntoineID());
+	}
+
+	int slot(final Location location) {
+		return subscriptions.locationSlot(location.getRomanAndAntoineID());
+	}
+
+	private Position position(final int slot) {
+		return slot < connections ? map.connections().get(slot) : map.locations().get(slot - connections);
+	}
+
+	/**
+	 * Get the slots of all positions on a route.
+	 *
+	 * @param route          the connections in travel order.
+	 * @param start          the location the route starts at.
+	 * @param includingStart whether to include the slot of {@code start}.
+	 *
+	 * @return The slots in travel order.
+	 */
+	int[] slots(final List<Connection> route, final Location start, final boolean includingStart) {
+		final var result = new int[2 * route.size() + (includingStart ? 1 : 0)];
+		int i = 0;
+		if (includingStart)
+			result[i++] = slot(start);
+		var location = start;
+		for (final var connection : route) {
+			location = connection.first().equals(location) ? connection.second() : connection.first();
+			result[i++] = slot(connection);
+			result[i++] = slot(location);
+		}
+		return result;
+	}
+
+	/**
+	 * Reserves a route starting now, or nothing.
+	 *
+	 * @param train          id of the train.
+	 * @param route          the connections in travel order.
+	 * @param start          the location the route starts at.
+	 * @param includingStart whether {@code start} has to be reserved as well.
+	 *
+	 * @return {@code null} on success, otherwise the first position on the route
+	 *         whose planned interval conflicts with another reservation.
+	 */
+	synchronized Position tryReserve(final int train, final List<Connection> route, final Location start,
+			final boolean includingStart) {
+		final long now = System.currentTimeMillis();
+		final var planned = new ArrayList<Interval>(2 * route.size() + 1);
+		final var plannedSlots = new ArrayList<Integer>(2 * route.size() + 1);
+
+		if (includingStart) {
+			plannedSlots.add(slot(start));
+			planned.add(new Interval(train, now - SLACK_MILLIS, now + SLACK_MILLIS));
+		}
+
+		long time = now;
+		var location = start;
+		for (final var connection : route) {
+			plannedSlots.add(slot(connection));
+			final long travel = timeScale.millis(connection.time());
+			planned.add(new Interval(train, time, time + travel));
+
+			time += travel;
+			location = connection.first().equals(location) ? connection.second() : connection.first();
+			plannedSlots.add(slot(location));
+			planned.add(new Interval(train, time - SLACK_MILLIS, time + SLACK_MILLIS));
+		}
+
+		for (int i = 0; i < planned.size(); i++) {
+			for (final var other : slots.get(plannedSlots.get(i))) {
+				if (other.overlaps(planned.get(i).start, planned.get(i).end))
+					return position(plannedSlots.get(i));
+			}
+		}
+
+		for (int i = 0; i < planned.size(); i++)
+			slots.get(plannedSlots.get(i)).add(planned.get(i));
+		return null;
+	}
+
+	/**
+	 * Reserves a route starting from the current location, waiting until it
+	 * fits. Nothing is reserved while waiting.
+	 *
+	 * @param train id of the train.
+	 * @param route the connections in travel order.
+	 * @param start the location the route starts at.
+	 */
+	void reserve(final int train, final List<Connection> route, final Location start) {
+		while (true) {
+			final var blocking = tryReserve(train, route, start, true);
+			if (blocking == null)
+				return;
+
+			final var subscription = subscriptions.subscribe(
+					blocking instanceof Connection ? slot((Connection) blocking) : slot((Location) blocking));
+			//the route is planned from the current time, so it may fit by now
+			if (tryReserve(train, route, start, true) == null) {
+				subscription.cancel();
+				return;
+			}
+			subscription.await();
+		}
+	}
+
+	/**
+	 * Enters all positions of a route at once, waiting until no other train holds
+	 * any of them. Nothing is held while waiting.
+	 *
+	 * @param train id of the train.
+	 * @param route the slots of the positions, see {@link #slots}.
+	 *
+	 * @throws IllegalStateException if the train has not reserved one of them.
+	 */
+	void enter(final int train, final int[] route) {
+		while (true) {
+			final int blocking = tryEnter(train, route);
+			if (blocking == NONE)
+				return;
+
+			final var subscription = subscriptions.subscribe(blocking);
+			if (tryEnter(train, route) == NONE) {
+				subscription.cancel();
+				return;
+			}
+			subscription.await();
+		}
+	}
+
+	/**
+	 * Enters all positions of a route if no other train holds any of them, or
+	 * none of them. An entered interval is extended back to the current time, so
+	 * no later reservation can be planned before it anymore.
+	 *
+	 * @param train id of the train.
+	 * @param route the slots of the positions, see {@link #slots}.
+	 *
+	 * @return {@code -1} on success, otherwise the slot held by another train.
+	 *
+	 * @throws IllegalStateException if the train has not reserved one of them.
+	 */
+	synchronized int tryEnter(final int train, final int[] route) {
+		for (final int slot : route) {
+			if (interval(slot, train) == NONE)
+				throw new IllegalStateException(String.format("Train %d has not reserved %s!", train, position(slot)));
+			if (holders[slot] != NONE && holders[slot] != train)
+				return slot;
+		}
+
+		final long now = System.currentTimeMillis();
+		for (final int slot : route) {
+			final var intervals = slots.get(slot);
+			final int index = interval(slot, train);
+			final var interval = intervals.get(index);
+			if (interval.start > now)
+				intervals.set(index, new Interval(train, now, interval.end));
+			holders[slot] = train;
+		}
+		return NONE;
+	}
+
+	/**
+	 * @return The index of the interval of a train on a position, or {@code -1}.
+	 */
+	private int interval(final int slot, final int train) {
+		final var intervals = slots.get(slot);
+		for (int i = 0; i < intervals.size(); i++) {
+			if (intervals.get(i).train == train)
+				return i;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Lets go of a position the train entered, but keeps its interval there, e.g.
+	 * while the train is parked, and wakes up the trains waiting for it.
+	 *
+	 * @param slot  of the position.
+	 * @param train id of the train.
+	 */
+	void release(final int slot, final int train) {
+		synchronized (this) {
+			if (holders[slot] == train)
+				holders[slot] = NONE;
+		}
+		subscriptions.freed(slot);
+	}
+
+	/**
+	 * Removes the interval of a train from a position, lets go of it if the train
+	 * entered it and wakes up the trains waiting for it.
+	 *
+	 * @param slot  of the position.
+	 * @param train id of the train.
+	 */
+	void free(final int slot, final int train) {
+		synchronized (this) {
+			slots.get(slot).removeIf(interval -> interval.train == train);
+			if (holders[slot] == train)
+				holders[slot] = NONE;
+		}
+		subscriptions.freed(slot);
+	}
+}
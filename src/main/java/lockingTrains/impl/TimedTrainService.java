@@ -0,0 +1,72 @@
+package lockingTrains.impl;
+
+import lockingTrains.shared.*;
+import lockingTrains.shared.Map;
+
+import java.util.List;
+
+/**
+ * TrainService reserving each position only for the time a train plans to use it, see TimedReservationTable.
+ * Trains enter their route part by part right before driving it, and wait parked in enterRoute while another
+ * train is still on the next part
+ */
+class TimedTrainService extends TrainService {
+
+    private final TimedReservationTable table;
+
+
+    /**
+     * Constructor for class; called in Simulator
+     * @param map the map trains drive on
+     * @param window number of connections a train reserves at once, {@code 0} for the whole route
+     * @param router computes the routes of all trains of this simulation run
+     * @param timeScale the speed of this simulation run, reservations are planned by it
+     */
+    TimedTrainService(Map map, int window, Router router, TimeScale timeScale) {
+        super(null, window, router, timeScale);
+        this.table = new TimedReservationTable(map, timeScale);
+    }
+
+    @Override
+    Position reserveRoute(List <Connection> connections, Location currentLocation, int id) {
+        return table.tryReserve(id, connections, currentLocation, true);
+    }
+
+    @Override
+    Position extendRoute(List <Connection> connections, Location currentLocation, int id) {
+        //the current location is still reserved until the train leaves it
+        return table.tryReserve(id, connections, currentLocation, false);
+    }
+
+    @Override
+    void reserveRoute2(List <Connection> connections, Location currentLocation, int id) {
+        table.reserve(id, connections, currentLocation);
+    }
+
+    @Override
+    boolean entersRoutes() {
+        return true;
+    }
+
+    @Override
+    boolean tryEnterRoute(List <Connection> connections, Location currentLocation, int id) {
+        return table.tryEnter(id, table.slots(connections, currentLocation, true)) == TimedReservationTable.NONE;
+    }
+
+    @Override
+    void enterRoute(List <Connection> connections, Location currentLocation, int id) {
+        //the train is parked, so others may pass it while it waits
+        table.release(table.slot(currentLocation), id);
+        table.enter(id, table.slots(connections, currentLocation, true));
+    }
+
+    @Override
+    void freeConnection(Connection connection, int id) {
+        table.free(table.slot(connection), id);
+    }
+
+    @Override
+    void freeLocation(Location location, int id) {
+        table.free(table.slot(location), id);
+    }
+}
@@ -3,8 +3,6 @@ package lockingTrains.impl;
 import lockingTrains.shared.*;
 import lockingTrains.validation.Recorder;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -15,6 +13,7 @@ public class Train extends Thread {
     private final TrainSchedule trainSchedule;
     private final Recorder recorder;
     private final Map map;
+    private final Router router;
     private final TrainService trainService;
     private Location currentLocation;
     private final int id;
@@ -22,7 +21,9 @@ public class Train extends Thread {
     private boolean error = false;
     private boolean parking = false;
 
-    private List<Position> empty = new ArrayList<>(); //used in run()
+    private final AvoidSet empty; //used in run()
+    private final AvoidSet alreadyTaken; //reused by every retry in run()
+    private Location parkingAhead; //parking reserved at the end of the current window, incremental mode only
 
 
     /**
@@ -37,16 +38,18 @@ public class Train extends Thread {
         this.recorder = recorder;
         this.map = map;
         this.trainService = trainService;
+        this.router = trainService.router();
         this.currentLocation = trainSchedule.origin();
         this.id = counter++;
-
+        this.empty = new AvoidSet(map);
+        this.alreadyTaken = new AvoidSet(map);
     }
 
     /**
      * Main run() method of our Train-Thread; engulfed in a try{}catch{} to grab any pesky Exceptions
-     * 1.get map.route; if possible try to reserve; if reservable drive()
-     * 2.if not possible to reserve - check why not; use this as the "avoid" in next map.route to get alternative route
-     * 3.check if alternative route is reservable; if not check why and run the map.route with new "avoid" on step 2.
+     * 1.get router.route; if possible try to reserve; if reservable drive()
+     * 2.if not possible to reserve - check why not; use this as the "avoid" in next router.route to get alternative route
+     * 3.check if alternative route is reservable; if not check why and run the router.route with new "avoid" on step 2.
      * 4.if no alternative route is possible find a parking on route to dst and wait for it to be reservable
      */
     public void run() {
@@ -59,30 +62,33 @@ public class Train extends Thread {
                     recorder.finish(trainSchedule);
                     return;
                 }
-                route = map.route(currentLocation, trainSchedule.destination(), empty);
-                Collection<Position> alreadyTaken = new LinkedList<>();
+                route = reserveParkingAhead(router.route(currentLocation, trainSchedule.destination(), empty));
+                alreadyTaken.clear();
                 Position isTaken = trainService.reserveRoute(route, currentLocation, id);
                 if (isTaken == null) {
                     //route was reserved
                     drive(route);
                 } else {
                     //could not reserve whole route - need to check whats the problem and ask to reserve again
+                    freeParkingAhead();
 
                     while(true) {
                         alreadyTaken.add(isTaken);
                         //update route to take the new "avoid" into account
-                        route = map.route(currentLocation, trainSchedule.destination(), alreadyTaken);
+                        route = router.route(currentLocation, trainSchedule.destination(), alreadyTaken);
                         if (route != null) {
                             //we found an alternative route
+                            route = reserveParkingAhead(route);
                             isTaken = trainService.reserveRoute(route, currentLocation, id);
                             if (isTaken == null) { //try to reserve from TrainService
                                 drive(route); //drive using the newly reserved route
                                 break;
                             }
                             //can't reserve route - try alreadyTaken again
+                            freeParkingAhead();
 
                         } else { // there's no route possible - break and go to next ParkingPlace Phase
-                            route = map.route(currentLocation, trainSchedule.destination(), empty);
+                            route = router.route(currentLocation, trainSchedule.destination(), empty);
                             //find nearest parking to destination
                             route = findAndReserveParking(route);
                             //reserveParking will always give back a possible route
@@ -130,32 +136,48 @@ public class Train extends Thread {
      * @throws InterruptedException when interrupted while travelling
      */
     private void drive(List <Connection> connections) throws InterruptedException {
-        currentLocation.freeParking();
-        if(parking) {
-            recorder.resume(trainSchedule, currentLocation);
-            parking = false;
-        }
         assert (connections != null);
+        List <Connection> part = new LinkedList<>();
         Connection c;
-        while(!connections.isEmpty()) {
-            c = connections.remove(0);
-            recorder.leave(trainSchedule, currentLocation);
-            trainService.freeLocation(currentLocation, id);
-            recorder.travel(trainSchedule, c);
-            c.travel();
-            if(c.first().equals(currentLocation)) {
-                recorder.arrive(trainSchedule, c.second());
-                currentLocation = c.second();
+        while(true) {
+            while(!connections.isEmpty()) {
+                if(part.isEmpty()) {
+                    part = enterPart(connections);
+                    if(parking) {
+                        recorder.resume(trainSchedule, currentLocation);
+                        parking = false;
+                    }
+                    //only hand the parking place on once we have left it
+                    currentLocation.freeParking();
+                }
+                c = connections.remove(0);
+                part.remove(0);
+                recorder.leave(trainSchedule, currentLocation);
+                trainService.freeLocation(currentLocation, id);
+                recorder.travel(trainSchedule, c);
+                c.travel(trainService.timeScale());
+                if(c.first().equals(currentLocation)) {
+                    recorder.arrive(trainSchedule, c.second());
+                    currentLocation = c.second();
+                }
+                else if(c.second().equals(currentLocation)) {
+                    recorder.arrive(trainSchedule, c.first());
+                    currentLocation = c.first();
+                }
+                else {
+                    System.out.println("SOMETHING WENT TOTALLY WRONG, connection tryed which is not currently reachable");
+                    throw new IllegalStateException();
+                }
+                trainService.freeConnection(c, id);
             }
-            else if(c.second().equals(currentLocation)) {
-                recorder.arrive(trainSchedule, c.first());
-                currentLocation = c.first();
+            //incremental mode: drive on without stopping if the next window is free
+            if(trainService.window() == 0 || currentLocation.equals(trainSchedule.destination())) {
+                break;
             }
-            else {
-                System.out.println("SOMETHING WENT TOTALLY WRONG, connection tryed which is not currently reachable");
-                throw new IllegalStateException();
+            connections = extendWindow();
+            if(connections == null) {
+                break;
             }
-            trainService.freeConnection(c, id);
         }
         if(!currentLocation.isStation()) {
             recorder.pause(trainSchedule, currentLocation);
@@ -166,6 +188,89 @@ public class Train extends Thread {
 
 
 
+    /**
+     * Time-windowed reservations are only entered right before they are used: cuts the route after the next
+     * location where the train can stop, i.e. a station, a parking place it reserves there or the end of the route,
+     * and enters that part. If somebody is still in the way, the train parks here and waits without holding anything,
+     * so no train holding positions ever waits. In the other modes, reservations are held already
+     * @param connections the rest of the reserved route, it is never empty
+     * @return the part of the route the train may drive now
+     */
+    private List <Connection> enterPart(List <Connection> connections) {
+        if(!trainService.entersRoutes()) {
+            return new LinkedList<>(connections);
+        }
+        Location location = currentLocation;
+        List <Connection> part = new LinkedList<>();
+        for(Connection c : connections) {
+            location = c.first().equals(location) ? c.second() : c.first();
+            part.add(c);
+            //the end of the route is a station or a parking place reserved already
+            if(part.size() == connections.size() || location.reserveParking()) {
+                break;
+            }
+        }
+        if(!trainService.tryEnterRoute(part, currentLocation, id)) {
+            if(!currentLocation.isStation() && !parking) {
+                recorder.pause(trainSchedule, currentLocation);
+                parking = true;
+            }
+            trainService.enterRoute(part, currentLocation, id);
+        }
+        return part;
+    }
+
+    /**
+     * Incremental mode: cuts a route after the next {@code window} connections, or at the first location
+     * after that where a parking place can be reserved, so the train can always stop at the end of it.
+     * Without a window, or if no parking is found before the destination, the whole route is returned
+     * @param route the route to cut, it is never {@code null}
+     * @return the part of the route to reserve now
+     */
+    private List <Connection> reserveParkingAhead(List <Connection> route) {
+        parkingAhead = null;
+        if(trainService.window() == 0) {
+            return route;
+        }
+        Location location = currentLocation;
+        List <Connection> part = new LinkedList<>();
+        for(Connection c : route) {
+            location = c.first().equals(location) ? c.second() : c.first();
+            part.add(c);
+            if(part.size() >= trainService.window() && !location.equals(trainSchedule.destination())
+                    && location.reserveParking()) {
+                parkingAhead = location;
+                return part;
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Gives back the parking place reserved by reserveParkingAhead, when the window could not be reserved
+     */
+    private void freeParkingAhead() {
+        if(parkingAhead != null) {
+            parkingAhead.freeParking();
+            parkingAhead = null;
+        }
+    }
+
+    /**
+     * Incremental mode: called at the end of a window while still holding the current location;
+     * tries (without waiting) to reserve the next window of the shortest route
+     * @return the next window when it was reserved, {@code null} if the train has to stop here
+     */
+    private List <Connection> extendWindow() {
+        List <Connection> next = reserveParkingAhead(router.route(currentLocation, trainSchedule.destination(), empty));
+        if(trainService.extendRoute(next, currentLocation, id) == null) {
+            //the parking place here is handed on once we leave it
+            return next;
+        }
+        freeParkingAhead();
+        return null;
+    }
+
     /**
      * finds the next parking, and reserves it
      * @param route on which we need to find parking
@@ -4,8 +4,6 @@ import lockingTrains.shared.*;
 import lockingTrains.shared.Map;
 
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The purpose of this class is to lock the route, when a train is asking for it.
@@ -13,20 +11,54 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class TrainService {
 
-    private List<Connection> allConnections;
-    private List<Location> allLocations;
-    private int firstConnectionId;
-    private int firstLocationId;
-    private Lock lock = new ReentrantLock();
-  //  private Condition waitingRouteFree = lock.newCondition();
+    private final ReservationTable reservations;
+    private final int window;
+    private final Router router;
+    private final TimeScale timeScale;
 
 
     public TrainService(Map map){
-        this.allConnections = map.connections();
-        this.allLocations = map.locations();
-        //VERYIMPORTANTEDIT
-        this.firstConnectionId = allConnections.get(0).getRomanAndAntoineID();
-        this.firstLocationId = allLocations.get(0).getRomanAndAntoineID();
+        this(new LockReservationTable(map), 0, map.router(), TimeScale.REAL);
+    }
+
+    /**
+     * Constructor for a TrainService keeping its reservations in the given table
+     * @param reservations the table of reserved connections and locations, {@code null} for subclasses
+     *                     that keep track of reservations themselves
+     * @param window number of connections a train reserves at once, {@code 0} for the whole route
+     * @param router computes the routes of all trains of this simulation run
+     * @param timeScale the speed of this simulation run, trains travel by it
+     */
+    TrainService(ReservationTable reservations, int window, Router router, TimeScale timeScale){
+        this.reservations = reservations;
+        this.window = window;
+        this.router = router;
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * The router is only used for this simulation run, the router of the map is left alone
+     * @return the router computing the routes of the trains
+     */
+    Router router() {
+        return router;
+    }
+
+    /**
+     * The time scale is only used for this simulation run, so runs at different speeds do not interfere
+     * @return the time scale the trains travel by
+     */
+    TimeScale timeScale() {
+        return timeScale;
+    }
+
+    /**
+     * Incremental reservation mode: trains reserve only the next {@code window} connections of their route
+     * (up to the next location where they can park) and extend that while driving
+     * @return the number of connections to reserve at once, {@code 0} when trains reserve whole routes
+     */
+    int window() {
+        return window;
     }
 
 
@@ -39,60 +71,68 @@ public class TrainService {
      * @return Positon, if failed, or {@code null} wenn reserved
      */
     Position reserveRoute(List <Connection> connections, Location currentLocation, int id){
-        List <Connection> alreadyReservedConnection = new LinkedList<>();
-        List <Location> alreadyReservedLocation = new LinkedList<>();
-        //get all locations on the route
-        List <Location> locationsToReserve = locationsOnRoute(connections, currentLocation);
+        //try to reserve all connections, then all locations on the route in ascencding order of their ids
+        return reservations.tryReserve(connectionIds(connections), locationIds(connections, currentLocation));
+    }
 
+    /**
+     * Like reserveRoute, but for a train that already holds its current location and wants to drive on
+     * without stopping; only the connections and the locations after the current one are reserved
+     * @param connections the next part of the route
+     * @param currentLocation of the asking Train, already reserved by it
+     * @param id of the asking train (debugging info)
+     * @return Positon, if failed, or {@code null} wenn reserved
+     */
+    Position extendRoute(List <Connection> connections, Location currentLocation, int id){
+        int[] locationIds = locationIds(connections, currentLocation);
+        int[] ahead = new int[locationIds.length - 1];
+        int i = 0;
+        //drop the current location, it is ours already
+        for(int l : locationIds) {
+            if(l != currentLocation.getRomanAndAntoineID()) {
+                ahead[i] = l;
+                i++;
+            }
+        }
+        return reservations.tryReserve(connectionIds(connections), ahead);
+    }
+
+    /**
+     * Get the sorted ids of all connections on a route
+     * @param connections the route
+     * @return the ids in ascending order
+     */
+    private int[] connectionIds(List <Connection> connections) {
         int[] connectionsIds = new int[connections.size()];
-        int[] locationIds = new int[locationsToReserve.size()];
         int i = 0;
         //get all ids of the asked connections
         for(Connection c : connections) {
             connectionsIds[i] = c.getRomanAndAntoineID();
             i++;
         }
+        //sort the ids in ascending order
+        Arrays.sort(connectionsIds);
+        return connectionsIds;
+    }
 
-        i = 0;
+    /**
+     * Get the sorted ids of all locations on a route, including the current one
+     * @param connections the route
+     * @param currentLocation of the asking Train
+     * @return the ids in ascending order
+     */
+    private int[] locationIds(List <Connection> connections, Location currentLocation) {
+        //get all locations on the route
+        List <Location> locationsToReserve = locationsOnRoute(connections, currentLocation);
+        int[] locationIds = new int[locationsToReserve.size()];
+        int i = 0;
         //get all ids for the asked locations
         for(Location l : locationsToReserve) {
             locationIds[i] = l.getRomanAndAntoineID();
             i++;
         }
-        //sort the ids in ascending order
-        Arrays.sort(connectionsIds);
         Arrays.sort(locationIds);
-
-        //try to lock all connections on the route in ascencding order of their ids
-        for(i = 0; i < connectionsIds.length; i++) {
-            if(allConnections.get(connectionsIds[i]-firstConnectionId).getLock().tryLock()){
-                alreadyReservedConnection.add(allConnections.get(connectionsIds[i]-firstConnectionId));
-            }
-            else {
-                //when one reservation fails, unlock all and return
-                for(Connection c : alreadyReservedConnection) {
-                    c.getLock().unlock();
-                }
-                return allConnections.get(connectionsIds[i]-firstConnectionId);
-            }
-        }
-        //try to lock all locations on the route in ascencding order of their ids
-        for(i = 0; i < locationIds.length; i++) {
-            if(allLocations.get(locationIds[i]-firstLocationId).getLock().tryLock()){
-                alreadyReservedLocation.add(allLocations.get(locationIds[i]-firstLocationId));
-            }
-            else {
-                //when one reservation fails, unlock all and return
-                for(Connection c : alreadyReservedConnection) {
-                    c.getLock().unlock();
-                }
-                for(Location l : alreadyReservedLocation) {
-                    l.getLock().unlock();
-                }
-                return allLocations.get(locationIds[i]-firstLocationId);
-            }
-        }
-        return null;
+        return locationIds;
     }
 
 
@@ -183,19 +223,45 @@ public class TrainService {
     }
 
 
+    /**
+     * Whether trains have to enter each part of a reserved route right before they drive it, see TimedTrainService.
+     * Here, reservations are held from the moment they are made
+     * @return {@code false}, there is nothing to enter
+     */
+    boolean entersRoutes() {
+        return false;
+    }
+
+    /**
+     * Called by a train right before it drives (or resumes on) a part of a reserved route, without waiting
+     * @param connections the part of the route the train is about to drive
+     * @param currentLocation of calling train
+     * @param id of calling train
+     * @return {@code true} if the train may drive it now
+     */
+    boolean tryEnterRoute(List <Connection> connections, Location currentLocation, int id) {
+        return true;
+    }
+
+    /**
+     * Like tryEnterRoute, but waits until the train may drive the part. The train is parked meanwhile and
+     * holds nothing, not even its current location
+     * @param connections the part of the route the train is about to drive
+     * @param currentLocation of calling train
+     * @param id of calling train
+     */
+    void enterRoute(List <Connection> connections, Location currentLocation, int id) {
+    }
+
+
     /**
      * Unlock a connection
      * @param connection on which we call the unlock
      * @param id of calling train (debugging info)
      */
     void freeConnection(Connection connection, int id) {
-        connection.getLock().unlock();
-        //VERYIMPORTANTEDIT
-        //we need notifyAll here, because we do not know which connection will be freed, and
-        //which other train does need this freed connection.
-  //      lock.lock();
-   //     waitingRouteFree.signalAll();
-     //   lock.unlock();
+        //wakes only the trains waiting for exactly this connection, see PositionSubscriptions
+        reservations.freeConnection(connection.getRomanAndAntoineID());
     }
 
 
@@ -205,11 +271,8 @@ public class TrainService {
      * @param id of calling train (debugging info)
      */
     void freeLocation(Location location, int id) {
-        location.getLock().unlock();
-        //VERYIMPORTANTEDIT
- //       lock.lock();
- //       waitingRouteFree.signalAll();
-  //      lock.unlock();
+        //wakes only the trains waiting for exactly this location, see PositionSubscriptions
+        reservations.freeLocation(location.getRomanAndAntoineID());
     }
 
     /**
@@ -217,61 +280,24 @@ public class TrainService {
      * @param connections that the train wants to reserve
      * @param currentLocation of calling train
      * @param id of calling train (debugging info)
-     * @throws InterruptedException caused by the await
      */
     void waitingforReservedRoute(List <Connection> connections, Location currentLocation, int id)
             {
         //VERYIMPORTANTEDIT
         reserveRoute2(connections, currentLocation, id);
-         //   lock.lock();
-          //  waitingRouteFree.await(10, TimeUnit.MILLISECONDS);
-         //   lock.unlock();
-
-
     }
 
     /**
-     *  does the same as reserve route, except that it does use lock() instead of tryLock()
+     *  does the same as reserve route, except that it waits until the whole route is free instead of failing.
+     *  Nothing is held while waiting, so the waiting train does not block anybody else
      * @param connections  the route to reserve
      * @param currentLocation the current location of the train
      * @param id debuggin info
      */
     //VERYIMPORTANTEDIT
     void reserveRoute2(List <Connection> connections, Location currentLocation, int id){
-        List <Connection> alreadyReservedConnection = new LinkedList<>();
-        List <Location> alreadyReservedLocation = new LinkedList<>();
-        //get all locations on the route
-        List <Location> locationsToReserve = locationsOnRoute(connections, currentLocation);
-
-        int[] connectionsIds = new int[connections.size()];
-        int[] locationIds = new int[locationsToReserve.size()];
-        int i = 0;
-        //get all ids of the asked connections
-        for(Connection c : connections) {
-            connectionsIds[i] = c.getRomanAndAntoineID();
-            i++;
-        }
-
-        i = 0;
-        //get all ids for the asked locations
-        for(Location l : locationsToReserve) {
-            locationIds[i] = l.getRomanAndAntoineID();
-            i++;
-        }
-        //sort the ids in ascending order
-        Arrays.sort(connectionsIds);
-        Arrays.sort(locationIds);
-
-        //try to lock all connections on the route in ascencding order of their ids
-        for(i = 0; i < connectionsIds.length; i++) {
-            allConnections.get(connectionsIds[i]-firstConnectionId).getLock().lock();
-
-        }
-        //try to lock all locations on the route in ascencding order of their ids
-        for(i = 0; i < locationIds.length; i++) {
-            allLocations.get(locationIds[i]-firstLocationId).getLock().lock();
-
-        }
+        //reserve all connections and locations on the route at once, waiting for the one in the way to be freed
+        reservations.reserve(connectionIds(connections), locationIds(connections, currentLocation));
     }
 
     //DEBUG
@@ -0,0 +1,93 @@
+package lockingTrains.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import lockingTrains.shared.Map;
+
+/**
+ * Lets trains executing a {@link Plan} use every position in the planned order.
+ * <p>
+ * A train {@link #enter enters} a position when it starts to use it and
+ * {@link #pass passes} it when it is done, e.g. it enters a connection before
+ * travelling and passes it after arriving. Entering waits until all trains
+ * planned before it have passed. Each of those visits was planned to end
+ * strictly before the waiting one starts, so waits cannot form cycles.
+ */
+class VisitOrder {
+	private final int[][] order;
+	private final AtomicIntegerArray next;
+	private final PositionSubscriptions subscriptions;
+	private volatile boolean aborted;
+
+	VisitOrder(final Map map, final Plan plan) {
+		this.order = plan.order();
+		this.next = new AtomicIntegerArray(order.length);
+		this.subscriptions = new PositionSubscriptions(map);
+	}
+
+	/**
+	 * Get the slot of a connection.
+	 *
+	 * @param connection index of the connection.
+	 *
+	 * @return The slot to enter and pass.
+	 */
+	int connectionSlot(final int connection) {
+		return subscriptions.connectionSlot(connection);
+	}
+
+	/**
+	 * Get the slot of a location.
+	 *
+	 * @param location index of the location.
+	 *
+	 * @return The slot to enter and pass.
+	 */
+	int locationSlot(final int location) {
+		return subscriptions.locationSlot(location);
+	}
+
+	/**
+	 * Waits until it is the turn of a train on a position.
+	 *
+	 * @param slot  of the position.
+	 * @param train index of the schedule.
+	 *
+	 * @throws IllegalStateException if the execution was {@link #abort aborted}.
+	 */
+	void enter(final int slot, final int train) {
+		while (true) {
+			final var subscription = subscriptions.subscribe(slot);
+			if (aborted) {
+				subscription.cancel();
+				throw new IllegalStateException("Execution of the plan was aborted!");
+			}
+
+			final int turn = next.get(slot);
+			if (turn < order[slot].length && order[slot][turn] == train) {
+				subscription.cancel();
+				return;
+			}
+			subscription.await();
+		}
+	}
+
+	/**
+	 * Hands a position on to the next train.
+	 *
+	 * @param slot of the position.
+	 */
+	void pass(final int slot) {
+		next.incrementAndGet(slot);
+		subscriptions.freed(slot);
+	}
+
+	/**
+	 * Stops all waiting trains, after one of them failed.
+	 */
+	void abort() {
+		aborted = true;
+		for (int slot = 0; slot < order.length; slot++)
+			subscriptions.freed(slot);
+	}
+}
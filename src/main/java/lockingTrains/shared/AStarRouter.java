@@ -0,0 +1,74 @@
+package lockingTrains.shared;
+
+/**
+ * Goal-directed variant of the {@link DijkstraRouter} (A*). It uses the
+ * {@link Location#x() x} and {@link Location#y() y} coordinates of the map as a
+ * heuristic.
+ * <p>
+ * On construction, the router calibrates the smallest travel time per unit of
+ * straight-line distance over all connections of the map. Multiplied by the
+ * straight-line distance to the destination, this gives a lower bound on the
+ * remaining travel time, because no route can be faster per unit of distance
+ * than its fastest connection. If the map offers no such bound (all coordinates
+ * coincide, or some connection bridges a distance in no time), the estimate is
+ * always {@code 0} and the router behaves exactly like the {@link DijkstraRouter}.
+ */
+public class AStarRouter extends DijkstraRouter {
+	/**
+	 * Safety margin against rounding errors in the calibrated bound.
+	 */
+	private static final double MARGIN = 1 - 1e-9;
+
+	private final double[] x;
+	private final double[] y;
+	private final double timePerDistance;
+
+	/**
+	 * Constructs a new router and calibrates its heuristic.
+	 *
+	 * @param map the map to compute routes on.
+	 */
+	public AStarRouter(final Map map) {
+		super(map);
+
+		final int locations = map.locations().size();
+		this.x = new double[locations];
+		this.y = new double[locations];
+		for (int l = 0; l < locations; l++) {
+			x[l] = map.location(l).x();
+			y[l] = map.location(l).y();
+		}
+
+		double bound = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < map.connections().size(); c++) {
+			final var connection = map.connection(c);
+			final double distance = distance(map.indexOf(connection.first()), map.indexOf(connection.second()));
+			if (distance > 0)
+				bound = Math.min(bound, connection.time() / distance);
+		}
+
+		this.timePerDistance = Double.isFinite(bound) ? bound * MARGIN : 0;
+	}
+
+	/**
+	 * Get the calibrated lower bound on the travel time per unit of distance.
+	 *
+	 * @return The bound, or {@code 0} if routing falls back to plain Dijkstra.
+	 */
+	public double timePerDistance() {
+		return timePerDistance;
+	}
+
+	private double distance(final int a, final int b) {
+		final double dx = x[a] - x[b];
+		final double dy = y[a] - y[b];
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	@Override
+	int estimate(final int location, final int destination) {
+		if (timePerDistance == 0)
+			return 0;
+		return (int) (timePerDistance * distance(location, destination));
+	}
+}
@@ -0,0 +1,196 @@
+package lockingTrains.shared;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of {@link Position}s to avoid when routing on a {@link Map}. Locations and
+ * connections are stored in two {@link BitSet}s indexed by their dense index
+ * within the map, so adding and testing an element takes constant time.
+ * <p>
+ * An avoid set can only hold positions of the map it was created for. It can be
+ * passed wherever a {@code Collection<Position>} is expected, but routing
+ * against an avoid set of the same map does not need to convert or copy it.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @see Map#route(Location, Location, AvoidSet)
+ */
+public class AvoidSet extends AbstractSet<Position> {
+	final Map map;
+	private final BitSet locations;
+	private final BitSet connections;
+	private int size;
+
+	/**
+	 * Constructs an empty avoid set.
+	 *
+	 * @param map the map whose positions will be added.
+	 */
+	public AvoidSet(final Map map) {
+		this.map = map;
+		this.locations = new BitSet();
+		this.connections = new BitSet();
+	}
+
+	/**
+	 * Constructs an avoid set containing the given positions.
+	 *
+	 * @param map   the map the positions belong to.
+	 * @param avoid the positions to add.
+	 *
+	 * @return A new avoid set containing all of {@code avoid}.
+	 *
+	 * @throws IllegalArgumentException if a position is not part of {@code map}.
+	 */
+	public static AvoidSet of(final Map map, final Collection<? extends Position> avoid) {
+		final var set = new AvoidSet(map);
+		for (final var position : avoid)
+			set.add(position);
+		return set;
+	}
+
+	/**
+	 * Checks whether the location with the given dense index is contained.
+	 *
+	 * @param index of the location.
+	 *
+	 * @return {@code true} if the location is to be avoided.
+	 */
+	boolean containsLocation(final int index) {
+		return locations.get(index);
+	}
+
+	/**
+	 * Checks whether the connection with the given dense index is contained.
+	 *
+	 * @param index of the connection.
+	 *
+	 * @return {@code true} if the connection is to be avoided.
+	 */
+	boolean containsConnection(final int index) {
+		return connections.get(index);
+	}
+
+	/**
+	 * Lists the dense indices of all contained positions in ascending order.
+	 * Connections are shifted behind the locations, i.e. connection {@code i} is
+	 * listed as {@code locations + i} where {@code locations} is the number of map
+	 * locations. Equal sets of the same map yield equal arrays.
+	 *
+	 * @return The sorted dense indices of all contained positions.
+	 */
+	int[] indices() {
+		final var indices = new int[size];
+		final int offset = map.locations().size();
+		int i = 0;
+		for (int l = locations.nextSetBit(0); l != -1; l = locations.nextSetBit(l + 1))
+			indices[i++] = l;
+		for (int c = connections.nextSetBit(0); c != -1; c = connections.nextSetBit(c + 1))
+			indices[i++] = offset + c;
+		return indices;
+	}
+
+	/**
+	 * Adds a position.
+	 *
+	 * @param position to avoid.
+	 *
+	 * @return {@code true} if the position was not contained before.
+	 *
+	 * @throws IllegalArgumentException if {@code position} is not part of the map.
+	 */
+	@Override
+	public boolean add(final Position position) {
+		final BitSet bits;
+		final int index;
+		if (position instanceof Location) {
+			bits = locations;
+			index = map.indexOf((Location) position);
+		} else {
+			bits = connections;
+			index = map.indexOf((Connection) position);
+		}
+		if (index == -1)
+			throw new IllegalArgumentException(String.format("%s is not part of the map!", position));
+
+		if (bits.get(index))
+			return false;
+		bits.set(index);
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean contains(final Object object) {
+		if (object instanceof Location) {
+			final int index = map.indexOf((Location) object);
+			return index != -1 && locations.get(index);
+		}
+		if (object instanceof Connection) {
+			final int index = map.indexOf((Connection) object);
+			return index != -1 && connections.get(index);
+		}
+		return false;
+	}
+
+	@Override
+	public boolean remove(final Object object) {
+		if (!contains(object))
+			return false;
+
+		if (object instanceof Location)
+			locations.clear(map.indexOf((Location) object));
+		else
+			connections.clear(map.indexOf((Connection) object));
+		size--;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		locations.clear();
+		connections.clear();
+		size = 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Iterates over all locations, then all connections, by ascending dense index.
+	 * The iterator does not support removal.
+	 */
+	@Override
+	public Iterator<Position> iterator() {
+		return new Iterator<>() {
+			private int location = locations.nextSetBit(0);
+			private int connection = connections.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return location != -1 || connection != -1;
+			}
+
+			@Override
+			public Position next() {
+				if (location != -1) {
+					final var next = map.location(location);
+					location = locations.nextSetBit(location + 1);
+					return next;
+				}
+				if (connection != -1) {
+					final var next = map.connection(connection);
+					connection = connections.nextSetBit(connection + 1);
+					return next;
+				}
+				throw new NoSuchElementException();
+			}
+		};
+	}
+}
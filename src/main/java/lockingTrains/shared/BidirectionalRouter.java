@@ -0,0 +1,204 @@
+package lockingTrains.shared;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bidirectional variant of the {@link DijkstraRouter}. One search grows from the
+ * origin and a second one from the destination, always advancing the side whose
+ * next location is closer. Whenever a side scans a connection into a location
+ * the other side already reached, the combined route is a candidate. The search
+ * ends as soon as the two frontiers together are at least as long as the best
+ * candidate, which is then a shortest route.
+ * <p>
+ * For long routes, both searches only cover about half the radius, which on
+ * grid-like networks settles roughly half as many locations as unidirectional
+ * search. Working memory is pooled like in {@link DijkstraRouter}.
+ */
+public class BidirectionalRouter extends Router {
+	private final ScratchPool<Scratch> scratches;
+
+	/**
+	 * Constructs a new router.
+	 *
+	 * @param map the map to compute routes on.
+	 */
+	public BidirectionalRouter(final Map map) {
+		super(map);
+		final int locations = map.locations().size();
+		this.scratches = new ScratchPool<>(() -> new Scratch(locations));
+	}
+
+	@Override
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		final int from = map.indexOf(origin);
+		final int to = map.indexOf(destination);
+		if (from == -1 || to == -1)
+			return origin.equals(destination) && !avoid.contains(origin) ? new ArrayList<>() : null;
+
+		if (avoid.containsLocation(from) || avoid.containsLocation(to))
+			return null;
+		if (from == to)
+			return new ArrayList<>();
+
+		final var scratch = scratches.take();
+		try {
+			return route(scratch, from, to, avoid);
+		} finally {
+			scratches.give(scratch);
+		}
+	}
+
+	private List<Connection> route(final Scratch scratch, final int from, final int to, final AvoidSet avoid) {
+		final int stamp = scratch.next();
+		final var forward = scratch.forward;
+		final var backward = scratch.backward;
+
+		forward.start(from, stamp);
+		backward.start(to, stamp);
+
+		int best = Integer.MAX_VALUE;
+		int meeting = -1;
+		int meetingForward = -1;
+
+		while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+			final int frontier = forward.heap.peekKey() + backward.heap.peekKey();
+			if (frontier >= best)
+				break;
+
+			final boolean isForward = forward.heap.peekKey() <= backward.heap.peekKey();
+			final var side = isForward ? forward : backward;
+			final var other = isForward ? backward : forward;
+
+			final int current = side.heap.poll();
+			side.settled[current] = stamp;
+
+			final int base = side.distance[current];
+			for (final int connection : map.incident(current)) {
+				if (avoid.containsConnection(connection))
+					continue;
+
+				final int next = map.opposite(connection, current);
+				if (side.settled[next] == stamp || avoid.containsLocation(next))
+					continue;
+
+				final int candidate = base + map.time(connection);
+				if (side.reached[next] != stamp || candidate < side.distance[next]) {
+					side.reached[next] = stamp;
+					side.distance[next] = candidate;
+					side.via[next] = connection;
+					side.heap.offer(next, candidate);
+				}
+
+				if (other.reached[next] == stamp && candidate + other.distance[next] < best) {
+					best = candidate + other.distance[next];
+					meeting = connection;
+					meetingForward = isForward ? current : next;
+				}
+			}
+		}
+
+		forward.heap.clear();
+		backward.heap.clear();
+
+		if (meeting == -1)
+			return null;
+		return scratch.path(map, from, to, meeting, meetingForward);
+	}
+
+	/**
+	 * Working memory of one search direction.
+	 */
+	private static class Side {
+		final int[] distance;
+		final int[] via;
+		final int[] reached;
+		final int[] settled;
+		final IndexedHeap heap;
+
+		Side(final int locations) {
+			this.distance = new int[locations];
+			this.via = new int[locations];
+			this.reached = new int[locations];
+			this.settled = new int[locations];
+			this.heap = new IndexedHeap(locations);
+		}
+
+		/**
+		 * Starts the search of this side at a location.
+		 *
+		 * @param location index of the start location.
+		 * @param stamp    of the current query.
+		 */
+		void start(final int location, final int stamp) {
+			reached[location] = stamp;
+			distance[location] = 0;
+			via[location] = -1;
+			heap.offer(location, 0);
+		}
+
+		void reset() {
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+		}
+	}
+
+	/**
+	 * Working memory of a query.
+	 */
+	private static class Scratch {
+		final Side forward;
+		final Side backward;
+		int generation;
+
+		Scratch(final int locations) {
+			this.forward = new Side(locations);
+			this.backward = new Side(locations);
+		}
+
+		/**
+		 * Starts a new query, invalidating all entries of previous ones.
+		 *
+		 * @return The stamp that marks valid entries of the new query.
+		 */
+		int next() {
+			if (++generation == Integer.MAX_VALUE) {
+				forward.reset();
+				backward.reset();
+				generation = 1;
+			}
+			return generation;
+		}
+
+		/**
+		 * Joins the routes of both searches at the meeting connection.
+		 *
+		 * @param map            the map that was searched.
+		 * @param from           index of the origin.
+		 * @param to             index of the destination.
+		 * @param meeting        index of the connection joining both searches.
+		 * @param meetingForward index of the location of {@code meeting} that was
+		 *                       reached by the forward search.
+		 *
+		 * @return The connections from {@code from} to {@code to}.
+		 */
+		List<Connection> path(final Map map, final int from, final int to, final int meeting,
+				final int meetingForward) {
+			final var route = new ArrayList<Connection>();
+			for (int location = meetingForward; location != from; location = map.opposite(forward.via[location],
+					location))
+				route.add(map.connection(forward.via[location]));
+			Collections.reverse(route);
+
+			route.add(map.connection(meeting));
+
+			for (int location = map.opposite(meeting, meetingForward); location != to; location = map
+					.opposite(backward.via[location], location))
+				route.add(map.connection(backward.via[location]));
+
+			return route;
+		}
+	}
+}
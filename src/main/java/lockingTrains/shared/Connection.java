@@ -104,7 +104,21 @@ public class Connection extends Position {
 	 *                              throws an {@link InterruptedException}.
 	 */
 	public void travel() throws InterruptedException {
-		Thread.sleep(time);
+		travel(TimeScale.REAL);
+	}
+
+	/**
+	 * Lets the calling thread sleep for the travel time of the connection, scaled
+	 * by the given {@link TimeScale}. Trains of a simulation run at another speed
+	 * call this instead of {@link #travel()}.
+	 *
+	 * @param timeScale the time scale of the simulation run.
+	 *
+	 * @throws InterruptedException if {@link Thread#sleep(long) Thread.sleep}
+	 *                              throws an {@link InterruptedException}.
+	 */
+	public void travel(final TimeScale timeScale) throws InterruptedException {
+		timeScale.sleep(time);
 	}
 
 	/**
@@ -0,0 +1,601 @@
+package lockingTrains.shared;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link Router} answering unconstrained queries with contraction hierarchies.
+ * <p>
+ * Preprocessing contracts the locations one by one in order of importance. A
+ * location is removed from the graph and every shortest route through it is
+ * preserved by a shortcut edge between two of its neighbors, unless a local
+ * witness search finds an equally short route around it. The order is chosen
+ * greedily by edge difference (shortcuts added minus edges removed) plus the
+ * number of already contracted neighbors. Priorities are updated lazily.
+ * <p>
+ * A query runs a bidirectional Dijkstra that only follows edges towards more
+ * important locations, which settles a tiny part of the map. The resulting
+ * shortcuts are unpacked back into the original {@link Connection}s.
+ * <p>
+ * Queries that avoid positions are passed on to a fallback router, as the
+ * shortcuts are only valid for the complete map.
+ */
+public class ContractionHierarchy extends Router {
+	/**
+	 * Number of locations a witness search may settle before giving up. Giving up
+	 * early only adds superfluous shortcuts, it never breaks correctness.
+	 */
+	private static final int WITNESS_LIMIT = 64;
+
+	/**
+	 * Witness search limit while only estimating the priority of a location.
+	 */
+	private static final int ESTIMATE_LIMIT = 16;
+
+	/**
+	 * Largest number of neighbors whose priorities are recomputed right after a
+	 * contraction. Beyond that, the lazy check when they are dequeued has to do,
+	 * since every recomputation costs a witness search per neighbor pair.
+	 */
+	private static final int UPDATE_LIMIT = 16;
+
+	private final Router fallback;
+	private final int connections;
+
+	/**
+	 * Both ends, weight and children of all edges. Edges below
+	 * {@link #connections} are the original connections, the rest are shortcuts
+	 * replacing {@code childA} (from {@code edgeU} to the contracted location) and
+	 * {@code childB} (from the contracted location to {@code edgeV}).
+	 */
+	private final int[] edgeU;
+	private final int[] edgeV;
+	private final int[] edgeWeight;
+	private final int[] childA;
+	private final int[] childB;
+
+	/**
+	 * Upward graph in compressed form: the edges leading from location {@code l}
+	 * to more important locations are
+	 * {@code upEdges[upStart[l]..upStart[l + 1] - 1]}.
+	 */
+	private final int[] upStart;
+	private final int[] upEdges;
+
+	private final long preprocessingMillis;
+	private final ScratchPool<Scratch> scratches;
+
+	/**
+	 * Constructs a new contraction hierarchy. This runs the whole preprocessing.
+	 *
+	 * @param map      the map to compute routes on.
+	 * @param fallback the router for queries that avoid positions.
+	 *
+	 * @throws IllegalArgumentException if {@code fallback} was created for another
+	 *                                  map.
+	 */
+	public ContractionHierarchy(final Map map, final Router fallback) {
+		super(map);
+		if (fallback.map != map)
+			throw new IllegalArgumentException("Router was created for another map!");
+
+		this.fallback = fallback;
+		this.connections = map.connections().size();
+
+		final long start = System.currentTimeMillis();
+		final var builder = new Builder(map);
+		builder.contractAll();
+
+		this.edgeU = Arrays.copyOf(builder.edgeU, builder.edges);
+		this.edgeV = Arrays.copyOf(builder.edgeV, builder.edges);
+		this.edgeWeight = Arrays.copyOf(builder.edgeWeight, builder.edges);
+		this.childA = Arrays.copyOf(builder.childA, builder.edges);
+		this.childB = Arrays.copyOf(builder.childB, builder.edges);
+
+		final int locations = map.locations().size();
+		final var rank = builder.rank;
+		this.upStart = new int[locations + 1];
+		for (int e = 0; e < edgeU.length; e++) {
+			if (edgeU[e] != edgeV[e])
+				upStart[lower(e, rank) + 1]++;
+		}
+		for (int l = 0; l < locations; l++)
+			upStart[l + 1] += upStart[l];
+
+		this.upEdges = new int[upStart[locations]];
+		final var fill = Arrays.copyOf(upStart, locations);
+		for (int e = 0; e < edgeU.length; e++) {
+			if (edgeU[e] != edgeV[e])
+				upEdges[fill[lower(e, rank)]++] = e;
+		}
+
+		this.preprocessingMillis = System.currentTimeMillis() - start;
+		this.scratches = new ScratchPool<>(() -> new Scratch(locations));
+	}
+
+	/**
+	 * Get the less important end of an edge.
+	 */
+	private int lower(final int edge, final int[] rank) {
+		return rank[edgeU[edge]] < rank[edgeV[edge]] ? edgeU[edge] : edgeV[edge];
+	}
+
+	private int opposite(final int edge, final int location) {
+		return edgeU[edge] == location ? edgeV[edge] : edgeU[edge];
+	}
+
+	@Override
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		if (!avoid.isEmpty())
+			return fallback.route(origin, destination, avoid);
+
+		final int from = map.indexOf(origin);
+		final int to = map.indexOf(destination);
+		if (from == -1 || to == -1)
+			return origin.equals(destination) ? new ArrayList<>() : null;
+		if (from == to)
+			return new ArrayList<>();
+
+		final var scratch = scratches.take();
+		try {
+			return route(scratch, from, to);
+		} finally {
+			scratches.give(scratch);
+		}
+	}
+
+	private List<Connection> route(final Scratch scratch, final int from, final int to) {
+		final int stamp = scratch.next();
+		final var forward = scratch.forward;
+		final var backward = scratch.backward;
+		forward.start(from, stamp);
+		backward.start(to, stamp);
+
+		int best = Integer.MAX_VALUE;
+		int meeting = -1;
+
+		while (true) {
+			final boolean forwardActive = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+			final boolean backwardActive = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+			if (!forwardActive && !backwardActive)
+				break;
+
+			final boolean isForward = forwardActive
+					&& (!backwardActive || forward.heap.peekKey() <= backward.heap.peekKey());
+			final var side = isForward ? forward : backward;
+			final var other = isForward ? backward : forward;
+
+			final int current = side.heap.poll();
+			final int base = side.distance[current];
+			if (other.reached[current] == stamp && base + other.distance[current] < best) {
+				best = base + other.distance[current];
+				meeting = current;
+			}
+			if (stalled(side, current, stamp))
+				continue;
+
+			for (int i = upStart[current]; i < upStart[current + 1]; i++) {
+				final int edge = upEdges[i];
+				final int next = opposite(edge, current);
+				final int candidate = base + edgeWeight[edge];
+				if (side.reached[next] != stamp || candidate < side.distance[next]) {
+					side.reached[next] = stamp;
+					side.distance[next] = candidate;
+					side.via[next] = edge;
+					side.heap.offer(next, candidate);
+				}
+			}
+		}
+
+		forward.heap.clear();
+		backward.heap.clear();
+
+		if (meeting == -1)
+			return null;
+
+		final var route = new ArrayList<Connection>();
+		final var upward = new ArrayList<Integer>();
+		for (int location = meeting; location != from; location = opposite(forward.via[location], location))
+			upward.add(forward.via[location]);
+		int location = from;
+		for (int i = upward.size() - 1; i >= 0; i--) {
+			unpack(upward.get(i), location, route);
+			location = opposite(upward.get(i), location);
+		}
+		for (location = meeting; location != to; location = opposite(backward.via[location], location))
+			unpack(backward.via[location], location, route);
+
+		return route;
+	}
+
+	/**
+	 * Stall-on-demand: a location need not be expanded if a more important
+	 * neighbor already offers a shorter way to it, as then no shortest route
+	 * continues upwards from it.
+	 */
+	private boolean stalled(final Side side, final int location, final int stamp) {
+		final int distance = side.distance[location];
+		for (int i = upStart[location]; i < upStart[location + 1]; i++) {
+			final int edge = upEdges[i];
+			final int neighbor = opposite(edge, location);
+			if (side.reached[neighbor] == stamp && side.distance[neighbor] + edgeWeight[edge] < distance)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Appends the original connections of an edge in travel order.
+	 *
+	 * @param edge  the edge to unpack.
+	 * @param start the end of {@code edge} the route enters it from.
+	 * @param route the route to append to.
+	 */
+	private void unpack(final int edge, final int start, final List<Connection> route) {
+		if (edge < connections) {
+			route.add(map.connection(edge));
+			return;
+		}
+
+		final int middle = opposite(childA[edge], edgeU[edge]);
+		if (start == edgeU[edge]) {
+			unpack(childA[edge], start, route);
+			unpack(childB[edge], middle, route);
+		} else {
+			unpack(childB[edge], start, route);
+			unpack(childA[edge], middle, route);
+		}
+	}
+
+	/**
+	 * Get the router for queries that avoid positions.
+	 *
+	 * @return The fallback router.
+	 */
+	public Router fallback() {
+		return fallback;
+	}
+
+	/**
+	 * Get the number of shortcut edges added by the preprocessing.
+	 *
+	 * @return The number of shortcuts.
+	 */
+	public int shortcuts() {
+		return edgeU.length - connections;
+	}
+
+	/**
+	 * Get the time the preprocessing took.
+	 *
+	 * @return The preprocessing time in
+	 *         {@link java.util.concurrent.TimeUnit#MILLISECONDS}.
+	 */
+	public long preprocessingMillis() {
+		return preprocessingMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ContractionHierarchy(locations=%d, shortcuts=%d, built in %d ms)",
+				map.locations().size(), shortcuts(), preprocessingMillis);
+	}
+
+	/**
+	 * Working memory of one query direction.
+	 */
+	private static class Side {
+		final int[] distance;
+		final int[] via;
+		final int[] reached;
+		final IndexedHeap heap;
+
+		Side(final int locations) {
+			this.distance = new int[locations];
+			this.via = new int[locations];
+			this.reached = new int[locations];
+			this.heap = new IndexedHeap(locations);
+		}
+
+		void start(final int location, final int stamp) {
+			reached[location] = stamp;
+			distance[location] = 0;
+			via[location] = -1;
+			heap.offer(location, 0);
+		}
+	}
+
+	/**
+	 * Working memory of a query.
+	 */
+	private static class Scratch {
+		final Side forward;
+		final Side backward;
+		int generation;
+
+		Scratch(final int locations) {
+			this.forward = new Side(locations);
+			this.backward = new Side(locations);
+		}
+
+		int next() {
+			if (++generation == Integer.MAX_VALUE) {
+				Arrays.fill(forward.reached, 0);
+				Arrays.fill(backward.reached, 0);
+				generation = 1;
+			}
+			return generation;
+		}
+	}
+
+	/**
+	 * Mutable graph the preprocessing works on.
+	 */
+	private static class Builder {
+		final int locations;
+
+		int edges;
+		int[] edgeU;
+		int[] edgeV;
+		int[] edgeWeight;
+		int[] childA;
+		int[] childB;
+
+		/**
+		 * Edges incident to each location, including those to contracted ones.
+		 */
+		final int[][] incident;
+		final int[] degree;
+
+		final boolean[] contracted;
+		final int[] contractedNeighbors;
+		final int[] level;
+		final int[] rank;
+
+		/**
+		 * Neighbors of the location being contracted, with the lightest edge to each.
+		 */
+		final int[] neighbors;
+		final int[] neighborEdge;
+		final int[] neighborSlot;
+		int neighborCount;
+
+		final int[] witnessDistance;
+		final int[] witnessReached;
+		final IndexedHeap witnessHeap;
+		int witnessStamp;
+
+		Builder(final Map map) {
+			this.locations = map.locations().size();
+			final int connections = map.connections().size();
+
+			this.edgeU = new int[Math.max(16, 2 * connections)];
+			this.edgeV = new int[edgeU.length];
+			this.edgeWeight = new int[edgeU.length];
+			this.childA = new int[edgeU.length];
+			this.childB = new int[edgeU.length];
+
+			this.incident = new int[locations][];
+			this.degree = new int[locations];
+			for (int l = 0; l < locations; l++)
+				incident[l] = new int[Math.max(4, map.incident(l).length)];
+
+			for (int c = 0; c < connections; c++) {
+				final int u = map.opposite(c, -1);
+				final int v = map.opposite(c, u);
+				addEdge(u, v, map.time(c), -1, -1);
+			}
+
+			this.contracted = new boolean[locations];
+			this.contractedNeighbors = new int[locations];
+			this.level = new int[locations];
+			this.rank = new int[locations];
+
+			this.neighbors = new int[locations];
+			this.neighborEdge = new int[locations];
+			this.neighborSlot = new int[locations];
+			Arrays.fill(neighborSlot, -1);
+
+			this.witnessDistance = new int[locations];
+			this.witnessReached = new int[locations];
+			this.witnessHeap = new IndexedHeap(locations);
+		}
+
+		int addEdge(final int u, final int v, final int weight, final int a, final int b) {
+			if (edges == edgeU.length) {
+				final int capacity = 2 * edges;
+				edgeU = Arrays.copyOf(edgeU, capacity);
+				edgeV = Arrays.copyOf(edgeV, capacity);
+				edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+				childA = Arrays.copyOf(childA, capacity);
+				childB = Arrays.copyOf(childB, capacity);
+			}
+
+			final int edge = edges++;
+			edgeU[edge] = u;
+			edgeV[edge] = v;
+			edgeWeight[edge] = weight;
+			childA[edge] = a;
+			childB[edge] = b;
+
+			attach(u, edge);
+			if (v != u)
+				attach(v, edge);
+			return edge;
+		}
+
+		private void attach(final int location, final int edge) {
+			if (degree[location] == incident[location].length)
+				incident[location] = Arrays.copyOf(incident[location], 2 * degree[location]);
+			incident[location][degree[location]++] = edge;
+		}
+
+		int opposite(final int edge, final int location) {
+			return edgeU[edge] == location ? edgeV[edge] : edgeU[edge];
+		}
+
+		/**
+		 * Contracts all locations in order of their priority. The priorities of the
+		 * neighbors are updated after each contraction and checked again lazily
+		 * when a location is dequeued.
+		 */
+		void contractAll() {
+			final var queue = new IndexedHeap(locations);
+			for (int l = 0; l < locations; l++)
+				queue.offer(l, priority(l));
+
+			int order = 0;
+			while (!queue.isEmpty()) {
+				final int location = queue.poll();
+				final int priority = priority(location);
+				if (!queue.isEmpty() && priority > queue.peekKey()) {
+					queue.offer(location, priority);
+					continue;
+				}
+
+				contract(location, false, WITNESS_LIMIT);
+				contracted[location] = true;
+				rank[location] = order++;
+
+				final var affected = Arrays.copyOf(neighbors, neighborCount);
+				for (final int neighbor : affected) {
+					detach(neighbor);
+					if (affected.length <= UPDATE_LIMIT)
+						queue.update(neighbor, priority(neighbor));
+				}
+			}
+		}
+
+		/**
+		 * Drops the edges to contracted locations from the incident list of a
+		 * location, so later searches do not scan them over and over.
+		 */
+		void detach(final int location) {
+			final var edges = incident[location];
+			int kept = 0;
+			for (int i = 0; i < degree[location]; i++) {
+				if (!contracted[opposite(edges[i], location)])
+					edges[kept++] = edges[i];
+			}
+			degree[location] = kept;
+		}
+
+		int priority(final int location) {
+			final int shortcuts = contract(location, true, ESTIMATE_LIMIT);
+			return 2 * (shortcuts - neighborCount) + contractedNeighbors[location] + level[location];
+		}
+
+		/**
+		 * Collects the remaining neighbors of a location.
+		 */
+		void collectNeighbors(final int location) {
+			for (int i = 0; i < neighborCount; i++)
+				neighborSlot[neighbors[i]] = -1;
+			neighborCount = 0;
+
+			for (int i = 0; i < degree[location]; i++) {
+				final int edge = incident[location][i];
+				final int neighbor = opposite(edge, location);
+				if (neighbor == location || contracted[neighbor])
+					continue;
+
+				final int slot = neighborSlot[neighbor];
+				if (slot == -1) {
+					neighborSlot[neighbor] = neighborCount;
+					neighbors[neighborCount] = neighbor;
+					neighborEdge[neighborCount++] = edge;
+				} else if (edgeWeight[edge] < edgeWeight[neighborEdge[slot]]) {
+					neighborEdge[slot] = edge;
+				}
+			}
+		}
+
+		/**
+		 * Contracts a location or only counts the shortcuts contracting it would add.
+		 *
+		 * @param location to contract.
+		 * @param simulate {@code true} to only count.
+		 * @param limit    of the witness searches.
+		 *
+		 * @return The number of shortcuts needed.
+		 */
+		int contract(final int location, final boolean simulate, final int limit) {
+			collectNeighbors(location);
+
+			final int count = neighborCount;
+			final var pending = simulate ? null : new ArrayList<int[]>();
+			int shortcuts = 0;
+			for (int i = 0; i + 1 < count; i++) {
+				final int source = neighbors[i];
+				final int sourceWeight = edgeWeight[neighborEdge[i]];
+
+				int maxWeight = 0;
+				for (int j = i + 1; j < count; j++)
+					maxWeight = Math.max(maxWeight, sourceWeight + edgeWeight[neighborEdge[j]]);
+
+				witnessSearch(source, location, maxWeight, limit);
+
+				for (int j = i + 1; j < count; j++) {
+					final int target = neighbors[j];
+					final int weight = sourceWeight + edgeWeight[neighborEdge[j]];
+					if (witnessReached[target] == witnessStamp && witnessDistance[target] <= weight)
+						continue;
+
+					shortcuts++;
+					if (!simulate)
+						pending.add(new int[] { source, target, weight, neighborEdge[i], neighborEdge[j] });
+				}
+			}
+
+			if (!simulate) {
+				for (final var shortcut : pending)
+					addEdge(shortcut[0], shortcut[1], shortcut[2], shortcut[3], shortcut[4]);
+				for (int i = 0; i < count; i++) {
+					contractedNeighbors[neighbors[i]]++;
+					level[neighbors[i]] = Math.max(level[neighbors[i]], level[location] + 1);
+				}
+			}
+
+			return shortcuts;
+		}
+
+		/**
+		 * Dijkstra from {@code source} over uncontracted locations other than
+		 * {@code excluded}, up to {@code maxWeight} or {@code limit} settled
+		 * locations.
+		 */
+		void witnessSearch(final int source, final int excluded, final int maxWeight, final int limit) {
+			if (++witnessStamp == Integer.MAX_VALUE) {
+				Arrays.fill(witnessReached, 0);
+				witnessStamp = 1;
+			}
+
+			witnessReached[source] = witnessStamp;
+			witnessDistance[source] = 0;
+			witnessHeap.offer(source, 0);
+
+			int settled = 0;
+			while (!witnessHeap.isEmpty() && settled < limit && witnessHeap.peekKey() <= maxWeight) {
+				final int current = witnessHeap.poll();
+				settled++;
+
+				final int base = witnessDistance[current];
+				for (int i = 0; i < degree[current]; i++) {
+					final int edge = incident[current][i];
+					final int next = opposite(edge, current);
+					if (next == excluded || contracted[next])
+						continue;
+
+					final int candidate = base + edgeWeight[edge];
+					if (witnessReached[next] != witnessStamp || candidate < witnessDistance[next]) {
+						witnessReached[next] = witnessStamp;
+						witnessDistance[next] = candidate;
+						witnessHeap.offer(next, candidate);
+					}
+				}
+			}
+			witnessHeap.clear();
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package lockingTrains.shared;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dijkstra's algorithm on the dense indices of a {@link Map}. Distances and
+ * predecessors are kept in {@code int} arrays and unprocessed locations in an
+ * {@link IndexedHeap}, so relaxing a connection takes {@code O(log n)}.
+ * <p>
+ * All working memory is taken from a {@link ScratchPool} and reused by
+ * subsequent queries. Entries are invalidated by bumping a generation counter instead of
+ * clearing the arrays, so a query only touches the locations it reaches. Apart
+ * from the returned route, a query does not allocate.
+ * <p>
+ * Subclasses may direct the search towards the destination by overriding
+ * {@link #estimate estimate}, which turns the search into A*.
+ */
+public class DijkstraRouter extends Router {
+	private final ScratchPool<Scratch> scratches;
+	private volatile int settledInLastQuery;
+
+	/**
+	 * Constructs a new router.
+	 *
+	 * @param map the map to compute routes on.
+	 */
+	public DijkstraRouter(final Map map) {
+		super(map);
+		final int locations = map.locations().size();
+		this.scratches = new ScratchPool<>(() -> new Scratch(locations));
+	}
+
+	@Override
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		final int from = map.indexOf(origin);
+		final int to = map.indexOf(destination);
+		if (from == -1 || to == -1)
+			return origin.equals(destination) && !avoid.contains(origin) ? new ArrayList<>() : null;
+
+		if (avoid.containsLocation(from) || avoid.containsLocation(to))
+			return null;
+		if (from == to)
+			return new ArrayList<>();
+
+		final var scratch = scratches.take();
+		try {
+			return route(scratch, from, to, avoid);
+		} finally {
+			settledInLastQuery = scratch.settledCount;
+			scratches.give(scratch);
+		}
+	}
+
+	private List<Connection> route(final Scratch scratch, final int from, final int to, final AvoidSet avoid) {
+		final int stamp = scratch.next();
+
+		final var heap = scratch.heap;
+		final var distance = scratch.distance;
+		final var via = scratch.via;
+		final var reached = scratch.reached;
+		final var settled = scratch.settled;
+
+		reached[from] = stamp;
+		distance[from] = 0;
+		via[from] = -1;
+		heap.offer(from, estimate(from, to));
+
+		while (!heap.isEmpty()) {
+			final int current = heap.poll();
+			if (current == to) {
+				heap.clear();
+				return scratch.path(map, from, to);
+			}
+			settled[current] = stamp;
+			scratch.settledCount++;
+
+			final int base = distance[current];
+			for (final int connection : map.incident(current)) {
+				if (avoid.containsConnection(connection))
+					continue;
+
+				final int next = map.opposite(connection, current);
+				if (settled[next] == stamp || avoid.containsLocation(next))
+					continue;
+
+				final int candidate = base + map.time(connection);
+				if (reached[next] != stamp || candidate < distance[next]) {
+					reached[next] = stamp;
+					distance[next] = candidate;
+					via[next] = connection;
+					heap.offer(next, candidate + estimate(next, to));
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Computes a shortest-path tree rooted at a location, ignoring the
+	 * {@link #estimate estimate}. For every location {@code l}, the index of the
+	 * connection leading from {@code l} towards {@code root} is stored at
+	 * {@code via[offset + l]}, or {@code -1} for the root itself and for
+	 * unreachable locations. As connections are undirected, following these
+	 * connections from any location yields a shortest route to {@code root}.
+	 *
+	 * @param root   index of the root location.
+	 * @param via    array to store the tree in.
+	 * @param offset of the tree within {@code via}.
+	 */
+	void tree(final int root, final int[] via, final int offset) {
+		final int locations = map.locations().size();
+		Arrays.fill(via, offset, offset + locations, -1);
+
+		final var scratch = scratches.take();
+		try {
+			tree(scratch, root, via, offset);
+		} finally {
+			scratches.give(scratch);
+		}
+	}
+
+	private void tree(final Scratch scratch, final int root, final int[] via, final int offset) {
+		final int stamp = scratch.next();
+		final var heap = scratch.heap;
+		final var distance = scratch.distance;
+		final var reached = scratch.reached;
+		final var settled = scratch.settled;
+
+		reached[root] = stamp;
+		distance[root] = 0;
+		heap.offer(root, 0);
+
+		while (!heap.isEmpty()) {
+			final int current = heap.poll();
+			settled[current] = stamp;
+
+			final int base = distance[current];
+			for (final int connection : map.incident(current)) {
+				final int next = map.opposite(connection, current);
+				if (settled[next] == stamp)
+					continue;
+
+				final int candidate = base + map.time(connection);
+				if (reached[next] != stamp || candidate < distance[next]) {
+					reached[next] = stamp;
+					distance[next] = candidate;
+					via[offset + next] = connection;
+					heap.offer(next, candidate);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Estimates the remaining travel time from a location to the destination. The
+	 * estimate must never exceed the actual shortest travel time and must satisfy
+	 * {@code estimate(a, t) <= time(a, b) + estimate(b, t)} for every connection
+	 * between {@code a} and {@code b}. Otherwise the routes are not guaranteed to
+	 * be shortest.
+	 *
+	 * @param location    index of the location.
+	 * @param destination index of the destination.
+	 *
+	 * @return A lower bound on the travel time; {@code 0} for plain Dijkstra.
+	 */
+	int estimate(final int location, final int destination) {
+		return 0;
+	}
+
+	/**
+	 * Get the number of locations the last query settled before it reached the
+	 * destination. Useful to compare search strategies.
+	 *
+	 * @return The number of settled locations.
+	 */
+	int settledInLastQuery() {
+		return settledInLastQuery;
+	}
+
+	/**
+	 * Working memory of a query.
+	 */
+	private static class Scratch {
+		final int[] distance;
+		final int[] via;
+		final int[] reached;
+		final int[] settled;
+		final IndexedHeap heap;
+		int generation;
+		int settledCount;
+
+		/**
+		 * Allocates working memory for a map of the given size.
+		 *
+		 * @param locations number of locations.
+		 */
+		Scratch(final int locations) {
+			this.distance = new int[locations];
+			this.via = new int[locations];
+			this.reached = new int[locations];
+			this.settled = new int[locations];
+			this.heap = new IndexedHeap(locations);
+		}
+
+		/**
+		 * Starts a new query, invalidating all entries of previous ones.
+		 *
+		 * @return The stamp that marks valid entries of the new query.
+		 */
+		int next() {
+			settledCount = 0;
+			if (++generation == Integer.MAX_VALUE) {
+				Arrays.fill(reached, 0);
+				Arrays.fill(settled, 0);
+				generation = 1;
+			}
+			return generation;
+		}
+
+		/**
+		 * Collects the route to a settled location by following the predecessors.
+		 *
+		 * @param map  the map that was searched.
+		 * @param from index of the origin.
+		 * @param to   index of the destination.
+		 *
+		 * @return The connections from {@code from} to {@code to}.
+		 */
+		List<Connection> path(final Map map, final int from, final int to) {
+			int hops = 0;
+			for (int location = to; location != from; location = map.opposite(via[location], location))
+				hops++;
+
+			final var route = new ArrayList<Connection>(hops);
+			for (int location = to; location != from; location = map.opposite(via[location], location))
+				route.add(map.connection(via[location]));
+			Collections.reverse(route);
+
+			return route;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package lockingTrains.shared;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over the integers {@code 0..capacity-1} with integer keys.
+ * Every element is contained at most once, which allows decreasing the key of
+ * a contained element in {@code O(log n)}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+class IndexedHeap {
+	private final int[] heap;
+	private final int[] position;
+	private final int[] key;
+	private int size;
+
+	/**
+	 * Constructs an empty heap.
+	 *
+	 * @param capacity the number of distinct elements.
+	 */
+	IndexedHeap(final int capacity) {
+		this.heap = new int[capacity];
+		this.position = new int[capacity];
+		this.key = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Checks whether the heap is empty.
+	 *
+	 * @return {@code true} if there are no elements left.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Checks whether an element is contained.
+	 *
+	 * @param element to check.
+	 *
+	 * @return {@code true} if {@code element} is in the heap.
+	 */
+	boolean contains(final int element) {
+		return position[element] != -1;
+	}
+
+	/**
+	 * Get the smallest key.
+	 *
+	 * @return The key of the element {@link #poll poll} would return.
+	 */
+	int peekKey() {
+		return key[heap[0]];
+	}
+
+	/**
+	 * Inserts an element or decreases its key. Nothing happens if the element is
+	 * already contained with a key smaller than or equal to {@code newKey}.
+	 *
+	 * @param element to insert.
+	 * @param newKey  its key.
+	 *
+	 * @return {@code true} if the heap changed.
+	 */
+	boolean offer(final int element, final int newKey) {
+		int i = position[element];
+		if (i == -1) {
+			i = size++;
+		} else if (key[element] <= newKey) {
+			return false;
+		}
+
+		key[element] = newKey;
+		siftUp(i, element);
+		return true;
+	}
+
+	/**
+	 * Changes the key of a contained element in either direction.
+	 *
+	 * @param element to move, must be contained.
+	 * @param newKey  its new key.
+	 */
+	void update(final int element, final int newKey) {
+		final int oldKey = key[element];
+		key[element] = newKey;
+		if (newKey < oldKey)
+			siftUp(position[element], element);
+		else
+			siftDown(position[element], element);
+	}
+
+	/**
+	 * Removes the element with the smallest key.
+	 *
+	 * @return The removed element.
+	 */
+	int poll() {
+		final int top = heap[0];
+		position[top] = -1;
+
+		final int last = heap[--size];
+		if (size > 0)
+			siftDown(0, last);
+
+		return top;
+	}
+
+	/**
+	 * Removes all elements in {@code O(size)}.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int i, final int element) {
+		final int k = key[element];
+		while (i > 0) {
+			final int parent = (i - 1) >>> 1;
+			final int p = heap[parent];
+			if (key[p] <= k)
+				break;
+			heap[i] = p;
+			position[p] = i;
+			i = parent;
+		}
+		heap[i] = element;
+		position[element] = i;
+	}
+
+	private void siftDown(int i, final int element) {
+		final int k = key[element];
+		final int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			final int right = child + 1;
+			if (right < size && key[heap[right]] < key[heap[child]])
+				child = right;
+			final int c = heap[child];
+			if (k <= key[c])
+				break;
+			heap[i] = c;
+			position[c] = i;
+			i = child;
+		}
+		heap[i] = element;
+		position[element] = i;
+	}
+}
@@ -1,11 +1,8 @@
 package lockingTrains.shared;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
  * <p>
@@ -26,17 +23,181 @@ public class Map {
 	private final List<Location> locations;
 	private final List<Connection> connections;
 
+	/**
+	 * Adjacency index: for each location (by dense index) the dense indices of all
+	 * incident connections. Built once on construction and never modified.
+	 */
+	private final int[][] incident;
+
+	/**
+	 * Dense location indices of both ends of each connection, i.e. connection
+	 * {@code i} connects {@code ends[2 * i]} and {@code ends[2 * i + 1]}.
+	 */
+	private final int[] ends;
+
+	/**
+	 * Travel time of each connection by dense index.
+	 */
+	private final int[] times;
+
+	/**
+	 * The routing strategy {@link #route route} delegates to.
+	 */
+	private volatile Router router;
+
 	/**
 	 * Constructs a new map.
+	 * <p>
+	 * Assigns every location and connection its dense index within this map (see
+	 * {@link Location#getRomanAndAntoineID()}) and builds the adjacency index used
+	 * for routing.
 	 *
 	 * @param name        of the map.
 	 * @param locations   list of all map locations.
 	 * @param connections list of all connections between map locations.
+	 *
+	 * @throws IllegalArgumentException if a connection uses a location that is not
+	 *                                  part of {@code locations}.
 	 */
 	public Map(final String name, final List<Location> locations, final List<Connection> connections) {
 		this.name = name;
 		this.locations = locations;
 		this.connections = connections;
+
+		for (int i = 0; i < locations.size(); i++)
+			locations.get(i).setRomanAndAntoineID(i);
+		for (int i = 0; i < connections.size(); i++)
+			connections.get(i).setRomanAndAntoineID(i);
+
+		this.ends = new int[2 * connections.size()];
+		this.times = new int[connections.size()];
+		this.incident = buildAdjacency();
+
+		this.router = new DijkstraRouter(this);
+	}
+
+	/**
+	 * Builds the adjacency index and fills {@link #ends} and {@link #times}.
+	 * Connections appear in the order of {@link #connections()} for each location.
+	 *
+	 * @return The incident connection indices per location index.
+	 */
+	private int[][] buildAdjacency() {
+		final var degree = new int[locations.size()];
+		for (int i = 0; i < connections.size(); i++) {
+			final var connection = connections.get(i);
+			ends[2 * i] = indexOf(connection.first());
+			ends[2 * i + 1] = indexOf(connection.second());
+			times[i] = connection.time();
+			if (ends[2 * i] == -1 || ends[2 * i + 1] == -1)
+				throw new IllegalArgumentException(
+						String.format("Connection %s uses a location that is not on the map!", connection));
+
+			degree[ends[2 * i]]++;
+			if (ends[2 * i + 1] != ends[2 * i])
+				degree[ends[2 * i + 1]]++;
+		}
+
+		final var adjacency = new int[locations.size()][];
+		for (int l = 0; l < adjacency.length; l++)
+			adjacency[l] = new int[degree[l]];
+
+		final var fill = new int[locations.size()];
+		for (int i = 0; i < connections.size(); i++) {
+			adjacency[ends[2 * i]][fill[ends[2 * i]]++] = i;
+			if (ends[2 * i + 1] != ends[2 * i])
+				adjacency[ends[2 * i + 1]][fill[ends[2 * i + 1]]++] = i;
+		}
+
+		return adjacency;
+	}
+
+	/**
+	 * Get the dense index of a location within this map.
+	 *
+	 * @param location to look up.
+	 *
+	 * @return The index of {@code location} in {@link #locations()} or {@code -1}
+	 *         if it is not part of this map.
+	 */
+	int indexOf(final Location location) {
+		final int index = location.getRomanAndAntoineID();
+		if (index >= 0 && index < locations.size() && locations.get(index) == location)
+			return index;
+		return locations.indexOf(location);
+	}
+
+	/**
+	 * Get the dense index of a connection within this map.
+	 *
+	 * @param connection to look up.
+	 *
+	 * @return The index of {@code connection} in {@link #connections()} or
+	 *         {@code -1} if it is not part of this map.
+	 */
+	int indexOf(final Connection connection) {
+		final int index = connection.getRomanAndAntoineID();
+		if (index >= 0 && index < connections.size() && connections.get(index) == connection)
+			return index;
+		return connections.indexOf(connection);
+	}
+
+	/**
+	 * Get the dense indices of all connections incident to a location. The result
+	 * must not be modified.
+	 *
+	 * @param location index of the location.
+	 *
+	 * @return The indices of all connections touching the location.
+	 */
+	int[] incident(final int location) {
+		return incident[location];
+	}
+
+	/**
+	 * Get the location on the other end of a connection.
+	 *
+	 * @param connection index of the connection.
+	 * @param location   index of one of its locations.
+	 *
+	 * @return The index of the location on the other end of {@code connection}.
+	 */
+	int opposite(final int connection, final int location) {
+		final int first = ends[2 * connection];
+		return first == location ? ends[2 * connection + 1] : first;
+	}
+
+	/**
+	 * Get the travel time of a connection.
+	 *
+	 * @param connection index of the connection.
+	 *
+	 * @return The travel time of {@code connection}.
+	 */
+	int time(final int connection) {
+		return times[connection];
+	}
+
+	/**
+	 * Get the location with the given dense index.
+	 *
+	 * @param index of the location.
+	 *
+	 * @return The location stored at {@code index}.
+	 */
+	Location location(final int index) {
+		return locations.get(index);
+	}
+
+	/**
+	 * Get the connection with the given dense index.
+	 *
+	 * @param index of the connection.
+	 *
+	 * @return The connection stored at {@code index}.
+	 */
+	Connection connection(final int index) {
+		return connections.get(index);
 	}
 
 	/**
@@ -67,6 +228,31 @@ public class Map {
 		return Collections.unmodifiableList(connections);
 	}
 
+	/**
+	 * Get the routing strategy used by {@link #route route}. Defaults to a
+	 * {@link DijkstraRouter}.
+	 *
+	 * @return The current {@link Router}.
+	 */
+	public Router router() {
+		return router;
+	}
+
+	/**
+	 * Selects the routing strategy used by {@link #route route}, e.g. a
+	 * {@link ReferenceRouter} to compare against the default one.
+	 *
+	 * @param router to use from now on.
+	 *
+	 * @throws IllegalArgumentException if {@code router} was created for another
+	 *                                  map.
+	 */
+	public void setRouter(final Router router) {
+		if (router.map != this)
+			throw new IllegalArgumentException("Router was created for another map!");
+		this.router = router;
+	}
+
 	/**
 	 * Computes a shortest route between two locations on the map, possibly avoiding
 	 * some specific connections.
@@ -90,155 +276,34 @@ public class Map {
 	 * @return {@code null} if there is no route and a valid route otherwise.
 	 *
 	 * @see Connection
+	 * @see #setRouter(Router)
 	 */
 	public List<Connection> route(final Location origin, final Location destination, final Collection<Position> avoid) {
-		if (avoid.contains(origin) || avoid.contains(destination))
-			return null;
-
-		final var locations = new ArrayList<>(this.locations);
-		locations.removeIf(avoid::contains);
-
-		final var queue = new PriorityQueue<RoutableLocation>();
-		locations.forEach(l -> queue.offer(new RoutableLocation(l, -1)));
-
-		queue.removeIf(l -> l.location.equals(origin));
-		queue.offer(new RoutableLocation(origin, 0));
-
-		final var connections = new ArrayList<>(this.connections);
-		connections.removeIf(avoid::contains);
-
-		RoutableLocation last = null;
-		while (!queue.isEmpty()) {
-			final var current = queue.poll();
-
-			assert current != null;
-			if (current.distance == -1 || current.location.equals(destination)) {
-				last = current;
-				break;
-			}
-
-			connections.stream().filter(c -> connectsToUnvisitedLocation(c, current.location, queue))
-					.map(c -> toRoutableLocation(c, current)).forEach(l -> addIfShorter(l, queue));
-		}
-
-		if (last == null || last.distance == -1)
-			return null;
-
-		final var route = new LinkedList<Connection>();
-		while (last.prev != null) {
-			route.addFirst(last.reachedVia);
-			last = last.prev;
-		}
-
-		return route;
+		return router.route(origin, destination, avoid);
 	}
 
 	/**
-	 * this is a triumph 
-	 */
-
-	/**
-	 * Tests whether the given connection connects to location not visited yet.
-	 *
-	 * @param candidate the connection in question.
-	 * @param current   the current location.
-	 * @param queue     the collection of unvisited location.
+	 * Computes a shortest route between two locations on the map, avoiding the
+	 * positions in an {@link AvoidSet}. Behaves like
+	 * {@link #route(Location, Location, Collection)}, but checks each location and
+	 * connection against {@code avoid} in constant time and without copying it.
 	 *
-	 * @return {@code true} if the connection leads to an unvisited location.
-	 */
-	private boolean connectsToUnvisitedLocation(final Connection candidate, final Location current,
-			final PriorityQueue<RoutableLocation> queue) {
-		if (!candidate.first().equals(current) && !candidate.second().equals(current))
-			return false;
-
-		return queue.stream()
-				.anyMatch(l -> l.location.equals(candidate.first()) || l.location.equals(candidate.second()));
-	}
-
-	/**
-	 * Creates a {@link RoutableLocation} for the target of a given location.
-	 *
-	 * @param connection for which to create the routable location.
-	 * @param current    the current location.
+	 * @param origin      starting point of the route.
+	 * @param destination end point of the route.
+	 * @param avoid       set of {@link Position}s to avoid, created for this map.
 	 *
-	 * @return The other location of the connection as routable location.
-	 */
-	private RoutableLocation toRoutableLocation(final Connection connection, final RoutableLocation current) {
-		Location location;
-		if (connection.first().equals(current.location))
-			location = connection.second();
-		else
-			location = connection.first();
-
-		return new RoutableLocation(location, current.distance + connection.time(), connection, current);
-	}
-
-	/**
-	 * Updates the unprocessed locations if the given location is reached by a
-	 * shorter route. Thus, the location may move forward in processing order.
+	 * @return {@code null} if there is no route and a valid route otherwise.
 	 *
-	 * @param reached the location that was reached.
-	 * @param queue   the collection of unprocessed locations.
+	 * @throws IllegalArgumentException if {@code avoid} was created for another
+	 *                                  map.
 	 */
-	private void addIfShorter(final RoutableLocation reached, final PriorityQueue<RoutableLocation> queue) {
-		if (queue.removeIf(l -> l.location.equals(reached.location) && l.compareTo(reached) > 0))
-			queue.offer(reached);
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		if (avoid.map != this)
+			throw new IllegalArgumentException("Avoid set was created for another map!");
+		return router.route(origin, destination, avoid);
 	}
 
 	/**
-	 * Wrapper for locations to store routing information.
+	 * this is a triumph
 	 */
-	private class RoutableLocation implements Comparable<RoutableLocation> {
-		final Location location;
-		final int distance;
-		final Connection reachedVia;
-		final RoutableLocation prev;
-
-		/**
-		 * Constructs a new routable location.
-		 *
-		 * @param location to base on.
-		 * @param distance form the routing origin.
-		 */
-		RoutableLocation(final Location location, final int distance) {
-			this.location = location;
-			this.distance = distance;
-			this.reachedVia = null;
-			this.prev = null;
-		}
-
-		/**
-		 * Constructs a new routable location.
-		 *
-		 * @param location   to base on.
-		 * @param distance   from the routing origin.
-		 * @param reachedVia the connection that leads to this location.
-		 * @param prev       the location on the other side of the connection.
-		 */
-		RoutableLocation(final Location location, final int distance, final Connection reachedVia,
-				final RoutableLocation prev) {
-			this.location = location;
-			this.distance = distance;
-			this.reachedVia = reachedVia;
-			this.prev = prev;
-		}
-
-		@Override
-		public String toString() {
-			return location.toString();
-		}
-
-		@Override
-		public int compareTo(final RoutableLocation other) {
-			int otherDistance = other.distance;
-
-			if ((distance == -1) == (otherDistance == -1))
-				return distance - otherDistance;
-
-			if (otherDistance >= 0)
-				otherDistance = 1;
-
-			return otherDistance;
-		}
-	}
 }
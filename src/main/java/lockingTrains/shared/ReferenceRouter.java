@@ -0,0 +1,164 @@
+package lockingTrains.shared;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The original routing implementation of {@link Map#route Map.route}. It keeps
+ * all unprocessed locations in a {@link PriorityQueue} and creates a wrapper
+ * object per reached location. Useful as a baseline to compare other
+ * {@link Router}s against.
+ */
+public class ReferenceRouter extends Router {
+	/**
+	 * Constructs a new reference router.
+	 *
+	 * @param map the map to compute routes on.
+	 */
+	public ReferenceRouter(final Map map) {
+		super(map);
+	}
+
+	@Override
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		if (avoid.contains(origin) || avoid.contains(destination))
+			return null;
+
+		final var locations = new ArrayList<>(map.locations());
+		locations.removeIf(avoid::contains);
+
+		final var queue = new PriorityQueue<RoutableLocation>();
+		locations.forEach(l -> queue.offer(new RoutableLocation(l, -1)));
+
+		queue.removeIf(l -> l.location.equals(origin));
+		queue.offer(new RoutableLocation(origin, 0));
+
+		final var visited = new boolean[map.locations().size()];
+
+		RoutableLocation last = null;
+		while (!queue.isEmpty()) {
+			final var current = queue.poll();
+
+			assert current != null;
+			if (current.distance == -1 || current.location.equals(destination)) {
+				last = current;
+				break;
+			}
+
+			final int currentIndex = map.indexOf(current.location);
+			if (currentIndex == -1)
+				continue;
+			visited[currentIndex] = true;
+
+			for (final int index : map.incident(currentIndex)) {
+				final var connection = map.connection(index);
+				if (avoid.contains(connection))
+					continue;
+
+				final var reached = toRoutableLocation(connection, current);
+				if (!visited[map.indexOf(reached.location)])
+					addIfShorter(reached, queue);
+			}
+		}
+
+		if (last == null || last.distance == -1)
+			return null;
+
+		final var route = new LinkedList<Connection>();
+		while (last.prev != null) {
+			route.addFirst(last.reachedVia);
+			last = last.prev;
+		}
+
+		return route;
+	}
+
+	/**
+	 * Creates a {@link RoutableLocation} for the target of a given location.
+	 *
+	 * @param connection for which to create the routable location.
+	 * @param current    the current location.
+	 *
+	 * @return The other location of the connection as routable location.
+	 */
+	private RoutableLocation toRoutableLocation(final Connection connection, final RoutableLocation current) {
+		Location location;
+		if (connection.first().equals(current.location))
+			location = connection.second();
+		else
+			location = connection.first();
+
+		return new RoutableLocation(location, current.distance + connection.time(), connection, current);
+	}
+
+	/**
+	 * Updates the unprocessed locations if the given location is reached by a
+	 * shorter route. Thus, the location may move forward in processing order.
+	 *
+	 * @param reached the location that was reached.
+	 * @param queue   the collection of unprocessed locations.
+	 */
+	private void addIfShorter(final RoutableLocation reached, final PriorityQueue<RoutableLocation> queue) {
+		if (queue.removeIf(l -> l.location.equals(reached.location) && l.compareTo(reached) > 0))
+			queue.offer(reached);
+	}
+
+	/**
+	 * Wrapper for locations to store routing information.
+	 */
+	private class RoutableLocation implements Comparable<RoutableLocation> {
+		final Location location;
+		final int distance;
+		final Connection reachedVia;
+		final RoutableLocation prev;
+
+		/**
+		 * Constructs a new routable location.
+		 *
+		 * @param location to base on.
+		 * @param distance form the routing origin.
+		 */
+		RoutableLocation(final Location location, final int distance) {
+			this.location = location;
+			this.distance = distance;
+			this.reachedVia = null;
+			this.prev = null;
+		}
+
+		/**
+		 * Constructs a new routable location.
+		 *
+		 * @param location   to base on.
+		 * @param distance   from the routing origin.
+		 * @param reachedVia the connection that leads to this location.
+		 * @param prev       the location on the other side of the connection.
+		 */
+		RoutableLocation(final Location location, final int distance, final Connection reachedVia,
+				final RoutableLocation prev) {
+			this.location = location;
+			this.distance = distance;
+			this.reachedVia = reachedVia;
+			this.prev = prev;
+		}
+
+		@Override
+		public String toString() {
+			return location.toString();
+		}
+
+		@Override
+		public int compareTo(final RoutableLocation other) {
+			int otherDistance = other.distance;
+
+			if ((distance == -1) == (otherDistance == -1))
+				return distance - otherDistance;
+
+			if (otherDistance >= 0)
+				otherDistance = 1;
+
+			return otherDistance;
+		}
+	}
+}
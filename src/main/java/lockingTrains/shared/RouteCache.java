@@ -0,0 +1,189 @@
+package lockingTrains.shared;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Router} that caches the routes of another router. Results are keyed by
+ * origin, destination and the exact content of the {@link AvoidSet}. Queries
+ * that avoid more than a configurable number of positions are rare repeats and
+ * always go to the underlying router.
+ * <p>
+ * The cache is split into segments by key hash, each of which is a
+ * least-recently-used map guarded by its own monitor, so threads querying
+ * different routes rarely contend. Cached routes are stored immutably. Every
+ * call returns a fresh copy, since callers such as trains consume their route
+ * while driving it.
+ */
+public class RouteCache extends Router {
+	/**
+	 * Marks cached queries without a route.
+	 */
+	private static final List<Connection> NO_ROUTE = Collections.unmodifiableList(new ArrayList<>());
+
+	private static final int SEGMENTS = 16;
+
+	private final Router router;
+	private final int maxAvoid;
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Constructs a new route cache.
+	 *
+	 * @param map      the map to compute routes on.
+	 * @param router   the router to compute missing routes with.
+	 * @param capacity the maximum number of cached routes.
+	 * @param maxAvoid the maximum size of an {@link AvoidSet} to cache routes for;
+	 *                 {@code 0} caches unconstrained routes only.
+	 *
+	 * @throws IllegalArgumentException if {@code router} was created for another
+	 *                                  map or {@code capacity} is not positive.
+	 */
+	public RouteCache(final Map map, final Router router, final int capacity, final int maxAvoid) {
+		super(map);
+		if (router.map != map)
+			throw new IllegalArgumentException("Router was created for another map!");
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Cannot construct route cache for capacity " + capacity + "!");
+
+		this.router = router;
+		this.maxAvoid = maxAvoid;
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+	}
+
+	@Override
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		if (avoid.size() > maxAvoid)
+			return router.route(origin, destination, avoid);
+
+		final var key = new Key(origin, destination, avoid.indices());
+		final var segment = segments[(key.hash ^ (key.hash >>> 16)) & (SEGMENTS - 1)];
+
+		List<Connection> route;
+		synchronized (segment) {
+			route = segment.get(key);
+		}
+
+		if (route != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+			final var computed = router.route(origin, destination, avoid);
+			route = computed == null ? NO_ROUTE : List.copyOf(computed);
+			synchronized (segment) {
+				segment.put(key, route);
+			}
+		}
+
+		return route == NO_ROUTE ? null : new ArrayList<>(route);
+	}
+
+	/**
+	 * Get the router computing the routes that are not cached.
+	 *
+	 * @return The underlying router.
+	 */
+	public Router router() {
+		return router;
+	}
+
+	/**
+	 * Get the number of queries answered from the cache.
+	 *
+	 * @return The number of cache hits.
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of cacheable queries that had to be computed.
+	 *
+	 * @return The number of cache misses.
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of currently cached routes.
+	 *
+	 * @return The number of cached routes.
+	 */
+	public int size() {
+		int size = 0;
+		for (final var segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RouteCache(hits=%d, misses=%d, size=%d)", hits(), misses(), size());
+	}
+
+	/**
+	 * Cache key: origin, destination and the sorted dense indices of the avoided
+	 * positions.
+	 */
+	private static class Key {
+		final Location origin;
+		final Location destination;
+		final int[] avoid;
+		final int hash;
+
+		Key(final Location origin, final Location destination, final int[] avoid) {
+			this.origin = origin;
+			this.destination = destination;
+			this.avoid = avoid;
+			this.hash = 31 * (31 * System.identityHashCode(origin) + System.identityHashCode(destination))
+					+ Arrays.hashCode(avoid);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (!(other instanceof Key))
+				return false;
+
+			final var otherKey = (Key) other;
+			return origin == otherKey.origin && destination == otherKey.destination
+					&& Arrays.equals(avoid, otherKey.avoid);
+		}
+	}
+
+	/**
+	 * Least-recently-used map of bounded size.
+	 */
+	private static class Segment extends LinkedHashMap<Key, List<Connection>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(final int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final java.util.Map.Entry<Key, List<Connection>> eldest) {
+			return size() > capacity;
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package lockingTrains.shared;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Abstracts the computation of shortest routes on a {@link Map}. A router is
+ * bound to the map it was constructed for and may keep precomputed data about
+ * it. The router used by {@link Map#route Map.route} is selected with
+ * {@link Map#setRouter(Router)}.
+ * <p>
+ * Implementations must be safe to use from multiple threads at the same time.
+ */
+public abstract class Router {
+	/**
+	 * The map this router computes routes on.
+	 */
+	protected final Map map;
+
+	/**
+	 * Constructs any {@link Router} by binding it to its map.
+	 *
+	 * @param map the map to compute routes on.
+	 */
+	protected Router(final Map map) {
+		this.map = map;
+	}
+
+	/**
+	 * Computes a shortest route between two locations on the map. The result
+	 * follows the contract of {@link Map#route Map.route}, i.e. it is {@code null}
+	 * if there is no route, empty if {@code origin.equals(destination)} and a fresh
+	 * list of connections that the caller may modify otherwise.
+	 *
+	 * @param origin      starting point of the route.
+	 * @param destination end point of the route.
+	 * @param avoid       set of {@link Position}s to avoid, created for
+	 *                    {@link #map}.
+	 *
+	 * @return {@code null} if there is no route and a valid route otherwise.
+	 */
+	public abstract List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid);
+
+	/**
+	 * Computes a shortest route, converting {@code avoid} to an {@link AvoidSet}
+	 * first unless it already is one for {@link #map}.
+	 *
+	 * @param origin      starting point of the route.
+	 * @param destination end point of the route.
+	 * @param avoid       list of {@link Position}s to avoid.
+	 *
+	 * @return {@code null} if there is no route and a valid route otherwise.
+	 *
+	 * @see #route(Location, Location, AvoidSet)
+	 */
+	public List<Connection> route(final Location origin, final Location destination,
+			final Collection<Position> avoid) {
+		if (avoid instanceof AvoidSet && ((AvoidSet) avoid).map == map)
+			return route(origin, destination, (AvoidSet) avoid);
+		return route(origin, destination, AvoidSet.of(map, avoid));
+	}
+}
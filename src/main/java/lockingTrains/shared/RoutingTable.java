@@ -0,0 +1,110 @@
+package lockingTrains.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * {@link Router} answering unconstrained queries from a precomputed all-pairs
+ * next-hop table. For every pair of locations {@code (s, t)}, the table stores
+ * the first connection of a shortest route from {@code s} to {@code t}, so a
+ * route is read off in time proportional to its length.
+ * <p>
+ * The table is built by one shortest-path tree per destination, computed in
+ * parallel on the common fork-join pool. It takes {@code 4 * n * n} bytes for
+ * {@code n} locations (see {@link #memoryBytes()}), which limits it to small
+ * and medium maps. Queries that avoid positions are passed on to a fallback
+ * router.
+ */
+public class RoutingTable extends Router {
+	private final Router fallback;
+	private final int locations;
+
+	/**
+	 * Row {@code t} holds for every location {@code s} the index of the connection
+	 * to take from {@code s} towards {@code t}, or {@code -1}.
+	 */
+	private final int[] next;
+
+	private final long buildMillis;
+
+	/**
+	 * Constructs a new routing table. This computes the whole table, which takes
+	 * {@code n} shortest-path searches for {@code n} locations.
+	 *
+	 * @param map      the map to compute routes on.
+	 * @param fallback the router for queries that avoid positions.
+	 *
+	 * @throws IllegalArgumentException if {@code fallback} was created for another
+	 *                                  map or the table would not fit in an array.
+	 */
+	public RoutingTable(final Map map, final Router fallback) {
+		super(map);
+		if (fallback.map != map)
+			throw new IllegalArgumentException("Router was created for another map!");
+
+		this.fallback = fallback;
+		this.locations = map.locations().size();
+		if ((long) locations * locations > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Map is too large for a routing table!");
+
+		final long start = System.currentTimeMillis();
+		this.next = new int[locations * locations];
+		final var trees = new DijkstraRouter(map);
+		IntStream.range(0, locations).parallel().forEach(t -> trees.tree(t, next, t * locations));
+		this.buildMillis = System.currentTimeMillis() - start;
+	}
+
+	@Override
+	public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+		if (!avoid.isEmpty())
+			return fallback.route(origin, destination, avoid);
+
+		final int from = map.indexOf(origin);
+		final int to = map.indexOf(destination);
+		if (from == -1 || to == -1)
+			return origin.equals(destination) ? new ArrayList<>() : null;
+		if (from != to && next[to * locations + from] == -1)
+			return null;
+
+		final var route = new ArrayList<Connection>();
+		final int row = to * locations;
+		for (int location = from; location != to; location = map.opposite(next[row + location], location))
+			route.add(map.connection(next[row + location]));
+
+		return route;
+	}
+
+	/**
+	 * Get the router for queries that avoid positions.
+	 *
+	 * @return The fallback router.
+	 */
+	public Router fallback() {
+		return fallback;
+	}
+
+	/**
+	 * Get the memory occupied by the table.
+	 *
+	 * @return The size of the table in bytes.
+	 */
+	public long memoryBytes() {
+		return 4L * next.length;
+	}
+
+	/**
+	 * Get the time it took to compute the table.
+	 *
+	 * @return The build time in {@link java.util.concurrent.TimeUnit#MILLISECONDS}.
+	 */
+	public long buildMillis() {
+		return buildMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RoutingTable(locations=%d, memory=%.1f MiB, built in %d ms)", locations,
+				memoryBytes() / (1024.0 * 1024.0), buildMillis);
+	}
+}
@@ -0,0 +1,49 @@
+package lockingTrains.shared;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Working memory of routing queries, shared by all threads. A query takes an
+ * instance, uses it without blocking and gives it back, so there are never
+ * more instances than queries running at the same time.
+ * <p>
+ * Keeping the working memory per thread instead would cost one instance per
+ * train, each as large as the map, which is too much for many thousands of
+ * trains on virtual threads.
+ *
+ * @param <S> the type of working memory.
+ */
+class ScratchPool<S> {
+	private final Supplier<S> factory;
+	private final ConcurrentLinkedQueue<S> idle = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Constructs an empty pool.
+	 *
+	 * @param factory creating new instances when all are in use.
+	 */
+	ScratchPool(final Supplier<S> factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Takes an idle instance, or creates a new one.
+	 *
+	 * @return Working memory for exclusive use until it is {@link #give given}
+	 *         back.
+	 */
+	S take() {
+		final var scratch = idle.poll();
+		return scratch == null ? factory.get() : scratch;
+	}
+
+	/**
+	 * Gives an instance back for the next query.
+	 *
+	 * @param scratch taken from this pool.
+	 */
+	void give(final S scratch) {
+		idle.offer(scratch);
+	}
+}
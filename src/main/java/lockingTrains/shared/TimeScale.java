@@ -0,0 +1,79 @@
+package lockingTrains.shared;
+
+/**
+ * Speed of simulated time for a single simulation run.
+ * {@link Connection#travel(TimeScale)} sleeps for the travel time of a
+ * connection multiplied with the {@link #factor() factor}, and a validator
+ * given the same time scale expects trains to arrive no earlier than that. A
+ * factor of {@code 0.001} lets a train cross a connection of one minute in 60
+ * ms, while trains still run and wait for each other concurrently.
+ * <p>
+ * Scaled times are rounded down to whole milliseconds for the validation and
+ * the sleep never ends before them, so an arrival is never reported too early.
+ * Time scales are immutable, so runs with different speeds do not affect each
+ * other.
+ */
+public final class TimeScale {
+	/**
+	 * Real time, i.e. a factor of {@code 1}.
+	 */
+	public static final TimeScale REAL = new TimeScale(1);
+
+	private final double factor;
+
+	/**
+	 * Creates a time scale, e.g. with a factor of {@code 0.001} to run a thousand
+	 * times faster.
+	 *
+	 * @param factor travel times are multiplied with.
+	 *
+	 * @throws IllegalArgumentException if the factor is not positive.
+	 */
+	public TimeScale(final double factor) {
+		if (!(factor > 0) || Double.isInfinite(factor))
+			throw new IllegalArgumentException(String.format("Time scale %s is not a positive number!", factor));
+		this.factor = factor;
+	}
+
+	/**
+	 * Get the factor travel times are multiplied with.
+	 *
+	 * @return The time scale factor.
+	 */
+	public double factor() {
+		return factor;
+	}
+
+	/**
+	 * Scales a time, rounding down to whole milliseconds.
+	 *
+	 * @param time in milliseconds of simulated time.
+	 *
+	 * @return The least number of milliseconds of real time it takes.
+	 */
+	public long millis(final long time) {
+		if (factor == 1)
+			return time;
+		return (long) (time * factor);
+	}
+
+	/**
+	 * Lets the calling thread sleep for a scaled time.
+	 *
+	 * @param time in milliseconds of simulated time.
+	 *
+	 * @throws InterruptedException if {@link Thread#sleep(long, int)
+	 *                              Thread.sleep} throws an
+	 *                              {@link InterruptedException}.
+	 */
+	void sleep(final long time) throws InterruptedException {
+		if (factor == 1) {
+			Thread.sleep(time);
+			return;
+		}
+
+		final long nanos = (long) Math.ceil(time * factor * 1_000_000);
+		if (nanos > 0)
+			Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+	}
+}
@@ -0,0 +1,119 @@
+package lockingTrains.shared.io;
+
+/**
+ * Splits a single input line into the tokens of the map and problem file
+ * formats, replacing the regular expressions the {@link Parser} used before.
+ * <p>
+ * Names are {@code [a-zA-Z0-9_]+} and numbers {@code [-+]?[0-9]+}, just like
+ * {@code \w+} and {@code [-+]?\d+}. Every token is read greedily and no token
+ * can be followed by a character it could also contain, so the scanner accepts
+ * exactly the lines the expressions matched. Numbers are only converted once
+ * the whole line was accepted, so that a line which does not match never
+ * throws.
+ */
+final class LineScanner {
+	private static final int MAX_NUMBERS = 3;
+	/**
+	 * Numbers with at most this many digits always fit into an {@code int}.
+	 */
+	private static final int SAFE_DIGITS = 9;
+
+	private final String line;
+	private int position;
+
+	private final int[] starts = new int[MAX_NUMBERS];
+	private final int[] ends = new int[MAX_NUMBERS];
+	private int numbers;
+
+	/**
+	 * @param line to scan from its start.
+	 */
+	LineScanner(final String line) {
+		this.line = line;
+	}
+
+	private static boolean isWordCharacter(final char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Reads a name.
+	 *
+	 * @return The name, or {@code null} if the line does not continue with one.
+	 */
+	String name() {
+		final int start = position;
+		while (position < line.length() && isWordCharacter(line.charAt(position)))
+			position++;
+		return position == start ? null : line.substring(start, position);
+	}
+
+	/**
+	 * Reads a given sequence of characters.
+	 *
+	 * @param expected the characters.
+	 *
+	 * @return {@code true} if the line continues with them.
+	 */
+	boolean skip(final String expected) {
+		if (!line.startsWith(expected, position))
+			return false;
+		position += expected.length();
+		return true;
+	}
+
+	/**
+	 * Reads a number, which can be converted with {@link #integer} later.
+	 *
+	 * @return {@code true} if the line continues with a number.
+	 */
+	boolean number() {
+		final int start = position;
+		if (position < line.length() && (line.charAt(position) == '-' || line.charAt(position) == '+'))
+			position++;
+		final int digits = position;
+		while (position < line.length() && isDigit(line.charAt(position)))
+			position++;
+		if (position == digits)
+			return false;
+		starts[numbers] = start;
+		ends[numbers] = position;
+		numbers++;
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if the whole line was read.
+	 */
+	boolean atEnd() {
+		return position == line.length();
+	}
+
+	/**
+	 * Converts a number read before.
+	 *
+	 * @param index of the number in the line, starting at 0.
+	 *
+	 * @return Its value.
+	 *
+	 * @throws NumberFormatException like {@link Integer#parseInt(String)} if the
+	 *                               number does not fit into an {@code int}.
+	 */
+	int integer(final int index) {
+		final int start = starts[index];
+		final int end = ends[index];
+		final char sign = line.charAt(start);
+		final int digits = sign == '-' || sign == '+' ? start + 1 : start;
+		if (end - digits > SAFE_DIGITS)
+			return Integer.parseInt(line.substring(start, end));
+
+		int value = 0;
+		for (int i = digits; i < end; i++)
+			value = value * 10 + line.charAt(i) - '0';
+		return sign == '-' ? -value : value;
+	}
+}
@@ -5,9 +5,8 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import lockingTrains.shared.Connection;
 import lockingTrains.shared.Location;
@@ -91,10 +90,6 @@ public class Parser {
 	 * Regex for matching names (maps and locations).
 	 */
 	private static final String REGEX_NAME = "\\w+";
-	/**
-	 * Regex for matching integers.
-	 */
-	private static final String REGEX_NUMBER = "[-+]?\\d+";
 
 	/**
 	 * Parses a new {@link Problem}, given the map and problem files to read from.
@@ -137,6 +132,20 @@ public class Parser {
 		}
 	}
 
+	/**
+	 * Indexes locations by their names.
+	 *
+	 * @param locations the list of locations.
+	 *
+	 * @return The locations by name, keeping the first of equal names.
+	 */
+	static HashMap<String, Location> index(final List<Location> locations) {
+		final var index = new HashMap<String, Location>();
+		for (final var location : locations)
+			index.putIfAbsent(location.name(), location);
+		return index;
+	}
+
 	/**
 	 * Parses a single location and adds it to a list.
 	 *
@@ -149,25 +158,35 @@ public class Parser {
 	 *                                  taken.
 	 */
 	static boolean parseLocation(final String line, final List<Location> locations) {
-		final String GROUP_NAME = "name";
-		final String GROUP_CAPACITY = "capacity";
-		final String GROUP_X = "x";
-		final String GROUP_Y = "y";
-
-		final var pattern = Pattern.compile(String.format("^(?<%s>%s):(?<%s>%s):\\((?<%s>%s),(?<%s>%s)\\)$", GROUP_NAME,
-				REGEX_NAME, GROUP_CAPACITY, REGEX_NUMBER, GROUP_X, REGEX_NUMBER, GROUP_Y, REGEX_NUMBER));
-		final var matcher = pattern.matcher(line);
-		if (!matcher.matches())
+		return parseLocation(line, locations, index(locations));
+	}
+
+	/**
+	 * Parses a single location and adds it to a list and its index.
+	 *
+	 * @param line      the line to parse.
+	 * @param locations the list of locations.
+	 * @param index     the locations by name.
+	 *
+	 * @return {@code true} if the line could be parsed successfully.
+	 *
+	 * @throws IllegalArgumentException if the name of the location is already
+	 *                                  taken.
+	 */
+	static boolean parseLocation(final String line, final List<Location> locations,
+			final HashMap<String, Location> index) {
+		final var scanner = new LineScanner(line);
+		final String name = scanner.name();
+		if (name == null || !scanner.skip(":") || !scanner.number() || !scanner.skip(":(") || !scanner.number()
+				|| !scanner.skip(",") || !scanner.number() || !scanner.skip(")") || !scanner.atEnd())
 			return false;
 
-		final String name = matcher.group(GROUP_NAME);
-		final int capacity = Integer.parseInt(matcher.group(GROUP_CAPACITY));
-		final int x = Integer.parseInt(matcher.group(GROUP_X));
-		final int y = Integer.parseInt(matcher.group(GROUP_Y));
+		final int capacity = scanner.integer(0);
+		final int x = scanner.integer(1);
+		final int y = scanner.integer(2);
 
 		final var location = new Location(name, Location.Capacity.get(capacity), x, y);
-		final boolean nameTaken = locations.stream().anyMatch(l -> l.equals(location));
-		if (nameTaken)
+		if (index.putIfAbsent(name, location) != null)
 			throw new IllegalArgumentException("Location names must be unique!");
 		locations.add(location);
 
@@ -191,30 +210,47 @@ public class Parser {
 	 *                                  is negative.
 	 */
 	static boolean parseConnection(final String line, List<Location> locations, final List<Connection> connections) {
-		final String GROUP_NAME_A = "nameA";
-		final String GROUP_NAME_B = "nameB";
-		final String GROUP_TIME = "time";
-
-		final var pattern = Pattern.compile(String.format("^(?<%s>%s)-(?<%s>%s):(?<%s>%s)$", GROUP_NAME_A, REGEX_NAME,
-				GROUP_NAME_B, REGEX_NAME, GROUP_TIME, REGEX_NUMBER));
-		final var matcher = pattern.matcher(line);
-		if (!matcher.matches())
+		return parseConnection(line, index(locations), connections);
+	}
+
+	/**
+	 * Parses a single connection and adds it to a list.
+	 * <p>
+	 * Also checks whether the connected locations are present in an index of
+	 * locations.
+	 *
+	 * @param line        the line to parse.
+	 * @param index       the locations by name.
+	 * @param connections the list of connections.
+	 *
+	 * @return {@code true} if the line could be parsed successfully.
+	 *
+	 * @throws IllegalArgumentException if the connected locations are not present
+	 *                                  in the index or the travel time is
+	 *                                  negative.
+	 */
+	static boolean parseConnection(final String line, final HashMap<String, Location> index,
+			final List<Connection> connections) {
+		final var scanner = new LineScanner(line);
+		final String nameA = scanner.name();
+		if (nameA == null || !scanner.skip("-"))
+			return false;
+		final String nameB = scanner.name();
+		if (nameB == null || !scanner.skip(":") || !scanner.number() || !scanner.atEnd())
 			return false;
 
-		final String nameA = matcher.group(GROUP_NAME_A);
-		final String nameB = matcher.group(GROUP_NAME_B);
-		final int time = Integer.parseInt(matcher.group(GROUP_TIME));
+		final int time = scanner.integer(0);
 		if (time < 0)
 			throw new IllegalArgumentException("Travel times must be non-negative!");
 
-		final var locationA = locations.stream().filter(l -> l.name().equals(nameA)).findAny();
-		final var locationB = locations.stream().filter(l -> l.name().equals(nameB)).findAny();
+		final var locationA = index.get(nameA);
+		final var locationB = index.get(nameB);
 
-		if (!locationA.isPresent() || !locationB.isPresent())
+		if (locationA == null || locationB == null)
 			throw new IllegalArgumentException(
 					String.format("Could not find location \"%s\" or \"%s\"!", nameA, nameB));
 
-		final var connection = new Connection(locationA.get(), locationB.get(), time);
+		final var connection = new Connection(locationA, locationB, time);
 		connections.add(connection);
 
 		return true;
@@ -240,13 +276,14 @@ public class Parser {
 		}
 
 		final var locations = new ArrayList<Location>();
+		final var index = new HashMap<String, Location>();
 		String line;
 		do {
 			line = reader.readLine();
-		} while (line != null && parseLocation(line, locations));
+		} while (line != null && parseLocation(line, locations, index));
 
 		final var connections = new ArrayList<Connection>();
-		while (line != null && parseConnection(line, Collections.unmodifiableList(locations), connections)) {
+		while (line != null && parseConnection(line, index, connections)) {
 			line = reader.readLine();
 		}
 
@@ -271,26 +308,39 @@ public class Parser {
 	 * @return {@code true} if the line could be parsed successfully.
 	 */
 	static boolean parseSchedule(final String line, List<Location> locations, final List<TrainSchedule> schedules) {
-		final String GROUP_NAME_A = "nameA";
-		final String GROUP_NAME_B = "nameB";
+		return parseSchedule(line, index(locations), schedules);
+	}
 
-		final var pattern = Pattern
-				.compile(String.format("^(?<%s>%s)->(?<%s>%s)$", GROUP_NAME_A, REGEX_NAME, GROUP_NAME_B, REGEX_NAME));
-		final var matcher = pattern.matcher(line);
-		if (!matcher.matches())
+	/**
+	 * Parses a single train schedule and adds it to a list.
+	 * <p>
+	 * Also checks whether the scheduled origin and destination are present in an
+	 * index of locations.
+	 *
+	 * @param line      the line to parsed.
+	 * @param index     the locations by name.
+	 * @param schedules the list of schedules.
+	 *
+	 * @return {@code true} if the line could be parsed successfully.
+	 */
+	static boolean parseSchedule(final String line, final HashMap<String, Location> index,
+			final List<TrainSchedule> schedules) {
+		final var scanner = new LineScanner(line);
+		final String nameA = scanner.name();
+		if (nameA == null || !scanner.skip("->"))
+			return false;
+		final String nameB = scanner.name();
+		if (nameB == null || !scanner.atEnd())
 			return false;
 
-		final String nameA = matcher.group(GROUP_NAME_A);
-		final String nameB = matcher.group(GROUP_NAME_B);
-
-		final var locationA = locations.stream().filter(l -> l.name().equals(nameA)).findAny();
-		final var locationB = locations.stream().filter(l -> l.name().equals(nameB)).findAny();
+		final var locationA = index.get(nameA);
+		final var locationB = index.get(nameB);
 
-		if (!locationA.isPresent() || !locationB.isPresent())
+		if (locationA == null || locationB == null)
 			throw new IllegalArgumentException(
 					String.format("Could not find location \"%s\" or \"%s\"!", nameA, nameB));
 
-		final var schedule = new TrainSchedule(locationA.get(), locationB.get());
+		final var schedule = new TrainSchedule(locationA, locationB);
 		schedules.add(schedule);
 
 		return true;
@@ -316,11 +366,12 @@ public class Parser {
 					String.format("Name in problem file (%s) does not match name of the map (%s)!", name, map.name()));
 		}
 
+		final var index = index(map.locations());
 		final var schedules = new ArrayList<TrainSchedule>();
 		String line;
 		do {
 			line = reader.readLine();
-		} while (line != null && parseSchedule(line, map.locations(), schedules));
+		} while (line != null && parseSchedule(line, index, schedules));
 
 		if (line != null) {
 			throw new IllegalArgumentException(
@@ -1,7 +1,8 @@
 /**
  * Contains all data structures needed to describe the map and problem. You can
  * find the routing implementation under
- * {@link lockingTrains.shared.Map#route(lockingTrains.shared.Location, lockingTrains.shared.Location, java.util.Collection)}.
+ * {@link lockingTrains.shared.Map#route(lockingTrains.shared.Location, lockingTrains.shared.Location, java.util.Collection)},
+ * which delegates to an exchangeable {@link lockingTrains.shared.Router}.
  * It is important that you familiarize yourself with these classes as you need
  * them throughout your implementation. You should not need to change classes in
  * this package.
@@ -0,0 +1,295 @@
+package lockingTrains.validation;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * Implements the {@link Recorder} interface for the purpose of concatenating
+ * multiple recorders without serializing the calling threads, unlike
+ * {@link CatRecorder}.
+ * <p>
+ * Each call takes its timestamp on the calling thread and puts the event into
+ * a ring buffer. A single consumer thread takes the events out in the order
+ * their slots were claimed and replays them on all recorders. Claiming a slot
+ * is one atomic increment, so events that depend on each other, like one train
+ * leaving a location and the next arriving there, are replayed in the order
+ * they happened. A caller only waits if the ring is full.
+ * <p>
+ * The first exception or assertion error of a recorder is kept and stops the
+ * consumer thread. Later events are dropped, and every following call throws
+ * an {@link IllegalStateException}, including {@link #done()}. Otherwise the
+ * consumer stops once {@link #done()} replayed all events. Call
+ * {@link #close()} if the simulation ends without either, e.g. when a train
+ * failed, or the consumer thread keeps waiting for events.
+ */
+public class AsyncRecorder extends Recorder implements AutoCloseable {
+	/**
+	 * Number of events the ring buffer holds if not given otherwise.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	private static final int SPINS = 100;
+
+	private final List<Recorder> recorders;
+	private final int mask;
+	private final AtomicReferenceArray<TrainEvent> events;
+	private final AtomicLongArray sequences;
+	private final AtomicLong claimed;
+	private final Thread consumer;
+	private volatile long replayed;
+	private volatile boolean sleeping;
+	private volatile boolean closed;
+	private volatile Throwable failure;
+
+	/**
+	 * Constructs a new {@link AsyncRecorder} with a ring buffer of
+	 * {@link #DEFAULT_CAPACITY} events and starts its consumer thread.
+	 *
+	 * @param recorders to replay the events on, in this order.
+	 */
+	public AsyncRecorder(final List<Recorder> recorders) {
+		this(recorders, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new {@link AsyncRecorder} and starts its consumer thread.
+	 *
+	 * @param recorders to replay the events on, in this order.
+	 * @param capacity  of the ring buffer, a power of two.
+	 *
+	 * @throws IllegalArgumentException if the capacity is not a power of two.
+	 */
+	public AsyncRecorder(final List<Recorder> recorders, final int capacity) {
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException(String.format("Capacity %d is not a power of two!", capacity));
+
+		this.recorders = List.copyOf(recorders);
+		this.mask = capacity - 1;
+		this.events = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+			sequences.set(i, i);
+		this.claimed = new AtomicLong();
+
+		this.consumer = new Thread(this::consume, "AsyncRecorder");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Puts an event into the ring buffer.
+	 *
+	 * @return The sequence number of the event.
+	 */
+	private long publish(final TrainEvent event) {
+		checkFailure();
+		if (closed)
+			throw new IllegalStateException("The recorder is already closed!");
+
+		final long sequence = claimed.getAndIncrement();
+		final int slot = (int) sequence & mask;
+		for (int spins = 0; sequences.get(slot) != sequence; spins++) {
+			//the ring is full, wait for the consumer unless it stopped at a failure
+			if (spins < SPINS) {
+				Thread.onSpinWait();
+			} else {
+				checkFailure();
+				Thread.yield();
+			}
+		}
+		events.lazySet(slot, event);
+		sequences.set(slot, sequence + 1);
+		if (sleeping)
+			LockSupport.unpark(consumer);
+		return sequence;
+	}
+
+	private void consume() {
+		long sequence = 0;
+		while (true) {
+			final int slot = (int) sequence & mask;
+			if (sequences.get(slot) != sequence + 1) {
+				if (!idle(slot, sequence))
+					return;
+				continue;
+			}
+
+			final var event = events.get(slot);
+			events.lazySet(slot, null);
+			sequences.set(slot, sequence + mask + 1);
+			try {
+				for (final var recorder : recorders)
+					event.replay(recorder);
+			} catch (Exception | AssertionError e) {
+				//all later events are dropped anyway, nobody has to wait for them
+				failure = e;
+				return;
+			}
+			replayed = ++sequence;
+		}
+	}
+
+	/**
+	 * Waits for the next event.
+	 *
+	 * @return {@code false} if the recorder was closed and all events are
+	 *         replayed.
+	 */
+	private boolean idle(final int slot, final long sequence) {
+		for (int spins = 0; spins < SPINS; spins++) {
+			if (sequences.get(slot) == sequence + 1)
+				return true;
+			Thread.onSpinWait();
+		}
+
+		sleeping = true;
+		try {
+			if (sequences.get(slot) == sequence + 1)
+				return true;
+			if (closed && claimed.get() == sequence)
+				return false;
+			LockSupport.parkNanos(this, 1_000_000);
+			return true;
+		} finally {
+			sleeping = false;
+		}
+	}
+
+	/**
+	 * Waits until the consumer replayed an event.
+	 */
+	private void await(final long sequence) {
+		while (replayed <= sequence) {
+			if (!consumer.isAlive()) {
+				checkFailure();
+				throw new IllegalStateException("The consumer of the recorder stopped!");
+			}
+			LockSupport.parkNanos(this, 100_000);
+		}
+	}
+
+	private void checkFailure() {
+		final var failure = this.failure;
+		if (failure != null)
+			throw new IllegalStateException("A recorder failed: " + failure, failure);
+	}
+
+	/**
+	 * Get whether the consumer thread still runs.
+	 *
+	 * @return {@code false} once the recorder was closed or a recorder failed.
+	 */
+	boolean isConsuming() {
+		return consumer.isAlive();
+	}
+
+	/**
+	 * Waits until all events recorded so far are replayed and stops the consumer
+	 * thread. Calling it again has no effect.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(consumer);
+		try {
+			consumer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void start(final TrainSchedule schedule) {
+		publish(new StartEvent(schedule));
+	}
+
+	@Override
+	void start(final long timestamp, final TrainSchedule schedule) {
+		publish(new StartEvent(timestamp, schedule));
+	}
+
+	@Override
+	public void leave(final TrainSchedule schedule, final Location location) {
+		publish(new LeaveEvent(schedule, location));
+	}
+
+	@Override
+	void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+		publish(new LeaveEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void travel(final TrainSchedule schedule, final Connection section) {
+		publish(new TravelEvent(schedule, section));
+	}
+
+	@Override
+	void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+		publish(new TravelEvent(timestamp, schedule, section));
+	}
+
+	@Override
+	public void arrive(final TrainSchedule schedule, final Location location) {
+		publish(new ArriveEvent(schedule, location));
+	}
+
+	@Override
+	void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+		publish(new ArriveEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void pause(final TrainSchedule schedule, final Location location) {
+		publish(new PauseEvent(schedule, location));
+	}
+
+	@Override
+	void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+		publish(new PauseEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void resume(final TrainSchedule schedule, final Location location) {
+		publish(new ResumeEvent(schedule, location));
+	}
+
+	@Override
+	void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+		publish(new ResumeEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void finish(final TrainSchedule schedule) {
+		publish(new FinishEvent(schedule));
+	}
+
+	@Override
+	void finish(final long timestamp, final TrainSchedule schedule) {
+		publish(new FinishEvent(timestamp, schedule));
+	}
+
+	/**
+	 * Records the end of the simulation, waits until all events are replayed and
+	 * stops the consumer thread.
+	 *
+	 * @throws IllegalStateException if a recorder failed on any event.
+	 */
+	@Override
+	public void done() {
+		done(System.currentTimeMillis());
+	}
+
+	@Override
+	void done(final long timestamp) {
+		await(publish(new DoneEvent(timestamp)));
+		close();
+		checkFailure();
+	}
+}
@@ -0,0 +1,236 @@
+package lockingTrains.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * Implements the {@link Recorder} interface for the purpose of logging the
+ * events like {@link Logger}, but without a lock. Every thread appends to a
+ * buffer of its own, and {@link #eventLog()} merges the buffers when it is
+ * called.
+ * <p>
+ * The merged log is ordered by timestamp. Events with the same timestamp are
+ * ordered by {@link System#nanoTime()} at the time they were recorded, so an
+ * event that happened before another one on a different thread, like a train
+ * leaving a location before the next one arrives there, still comes first.
+ * Events of the same thread keep their order.
+ */
+public class BufferedLogger extends Recorder {
+	private final ConcurrentLinkedQueue<Buffer> buffers;
+	private final ThreadLocal<Buffer> buffer;
+	private List<TrainEvent> merged;
+	private int mergedSize;
+
+	/**
+	 * Append-only list of the events of one thread. Only the owning thread
+	 * writes, the size publishes the events to readers. Blocks start small and
+	 * double in size, so threads recording few events stay cheap.
+	 */
+	private static class Buffer {
+		private static final int FIRST_BLOCK = 8;
+		private static final int MAX_BLOCK = 256;
+
+		private final Block head = new Block(FIRST_BLOCK);
+		private Block tail = head;
+		private int used;
+		private volatile int size;
+
+		private static class Block {
+			final TrainEvent[] events;
+			final long[] nanos;
+			Block next;
+
+			Block(final int length) {
+				events = new TrainEvent[length];
+				nanos = new long[length];
+			}
+		}
+
+		void add(final TrainEvent event) {
+			if (used == tail.events.length) {
+				tail.next = new Block(Math.min(2 * used, MAX_BLOCK));
+				tail = tail.next;
+				used = 0;
+			}
+			tail.events[used] = event;
+			tail.nanos[used] = System.nanoTime();
+			used++;
+			size = size + 1;
+		}
+	}
+
+	/**
+	 * Reads the events of a {@link Buffer} published so far, in order.
+	 */
+	private static class Cursor {
+		private final int size;
+		private Buffer.Block block;
+		private int index;
+		private int offset;
+
+		Cursor(final Buffer buffer) {
+			this.size = buffer.size;
+			this.block = buffer.head;
+		}
+
+		boolean hasNext() {
+			return index < size;
+		}
+
+		TrainEvent event() {
+			return block.events[offset];
+		}
+
+		long nanos() {
+			return block.nanos[offset];
+		}
+
+		void next() {
+			index++;
+			offset++;
+			if (offset == block.events.length && index < size) {
+				block = block.next;
+				offset = 0;
+			}
+		}
+	}
+
+	/**
+	 * Constructs a new {@link BufferedLogger}.
+	 */
+	public BufferedLogger() {
+		this.buffers = new ConcurrentLinkedQueue<>();
+		this.buffer = ThreadLocal.withInitial(() -> {
+			final var buffer = new Buffer();
+			buffers.add(buffer);
+			return buffer;
+		});
+	}
+
+	private void log(final TrainEvent event) {
+		buffer.get().add(event);
+	}
+
+	@Override
+	public void start(final TrainSchedule schedule) {
+		log(new StartEvent(schedule));
+	}
+
+	@Override
+	void start(final long timestamp, final TrainSchedule schedule) {
+		log(new StartEvent(timestamp, schedule));
+	}
+
+	@Override
+	public void leave(final TrainSchedule schedule, final Location location) {
+		log(new LeaveEvent(schedule, location));
+	}
+
+	@Override
+	void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+		log(new LeaveEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void travel(final TrainSchedule schedule, final Connection section) {
+		log(new TravelEvent(schedule, section));
+	}
+
+	@Override
+	void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+		log(new TravelEvent(timestamp, schedule, section));
+	}
+
+	@Override
+	public void arrive(final TrainSchedule schedule, final Location location) {
+		log(new ArriveEvent(schedule, location));
+	}
+
+	@Override
+	void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+		log(new ArriveEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void pause(final TrainSchedule schedule, final Location location) {
+		log(new PauseEvent(schedule, location));
+	}
+
+	@Override
+	void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+		log(new PauseEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void resume(final TrainSchedule schedule, final Location location) {
+		log(new ResumeEvent(schedule, location));
+	}
+
+	@Override
+	void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+		log(new ResumeEvent(timestamp, schedule, location));
+	}
+
+	@Override
+	public void finish(final TrainSchedule schedule) {
+		log(new FinishEvent(schedule));
+	}
+
+	@Override
+	void finish(final long timestamp, final TrainSchedule schedule) {
+		log(new FinishEvent(timestamp, schedule));
+	}
+
+	@Override
+	public void done() {
+		log(new DoneEvent());
+	}
+
+	@Override
+	void done(final long timestamp) {
+		log(new DoneEvent(timestamp));
+	}
+
+	/**
+	 * Get the event log, merged from the events of all threads recorded so far.
+	 * The result cannot be modified. It is only computed again if events were
+	 * added since the last call.
+	 *
+	 * @return The (unmodifiable) list of events.
+	 */
+	public synchronized List<TrainEvent> eventLog() {
+		final var cursors = new PriorityQueue<Cursor>((a, b) -> {
+			if (a.event().timestamp != b.event().timestamp)
+				return Long.compare(a.event().timestamp, b.event().timestamp);
+			return Long.compare(a.nanos(), b.nanos());
+		});
+		int size = 0;
+		for (final var buffer : buffers) {
+			final var cursor = new Cursor(buffer);
+			size += cursor.size;
+			if (cursor.hasNext())
+				cursors.add(cursor);
+		}
+		if (merged != null && size == mergedSize)
+			return merged;
+
+		final var events = new ArrayList<TrainEvent>(size);
+		while (!cursors.isEmpty()) {
+			final var cursor = cursors.poll();
+			events.add(cursor.event());
+			cursor.next();
+			if (cursor.hasNext())
+				cursors.add(cursor);
+		}
+		merged = Collections.unmodifiableList(events);
+		mergedSize = size;
+		return merged;
+	}
+}
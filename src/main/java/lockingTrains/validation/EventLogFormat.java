@@ -0,0 +1,143 @@
+package lockingTrains.validation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import lockingTrains.shared.Problem;
+
+/**
+ * The binary format written by {@link EventLogWriter} and read by
+ * {@link EventLogReader}.
+ * <p>
+ * A log starts with the {@link #MAGIC magic number}, the {@link #VERSION
+ * version} and the number of schedules, locations and connections of the
+ * problem. Every event follows as its tag, the difference of its timestamp to
+ * the one before (zigzag encoded, since events may be recorded slightly out of
+ * order), the index of its schedule in the problem and the index of its
+ * location or connection in the map, if any. Numbers are unsigned LEB128
+ * varints.
+ * <p>
+ * The tags are shared with the fixed-size records of the
+ * {@link JournalRecorder}.
+ */
+final class EventLogFormat {
+	static final int MAGIC = 0x4C544556;
+	static final byte VERSION = 1;
+
+	static final byte START = 0;
+	static final byte LEAVE = 1;
+	static final byte TRAVEL = 2;
+	static final byte ARRIVE = 3;
+	static final byte PAUSE = 4;
+	static final byte RESUME = 5;
+	static final byte FINISH = 6;
+	static final byte DONE = 7;
+
+	/**
+	 * Largest size of an encoded event: a tag, a 64 bit varint and two 32 bit
+	 * varints.
+	 */
+	static final int MAX_EVENT_BYTES = 1 + 10 + 5 + 5;
+
+	private EventLogFormat() {
+	}
+
+	/**
+	 * Checks whether events with a tag refer to a location or connection.
+	 *
+	 * @param tag of the event.
+	 *
+	 * @return {@code true} if the event has a position.
+	 */
+	static boolean hasPosition(final byte tag) {
+		return tag != START && tag != FINISH && tag != DONE;
+	}
+
+	/**
+	 * Creates the event for a decoded tag and indices.
+	 *
+	 * @param tag       of the event.
+	 * @param timestamp of the event.
+	 * @param problem   the indices refer to.
+	 * @param schedule  index in the problem, ignored for {@link #DONE}.
+	 * @param position  index of the location or connection in the map, ignored
+	 *                  if the event has none.
+	 *
+	 * @return The event.
+	 *
+	 * @throws IOException if the tag is unknown or an index is out of range.
+	 */
+	static TrainEvent event(final byte tag, final long timestamp, final Problem problem, final int schedule,
+			final int position) throws IOException {
+		if (tag == DONE)
+			return new DoneEvent(timestamp);
+
+		final var trainSchedule = problem.schedules().get(check(schedule, problem.schedules().size()));
+		final var locations = problem.map().locations();
+		switch (tag) {
+		case START:
+			return new StartEvent(timestamp, trainSchedule);
+		case LEAVE:
+			return new LeaveEvent(timestamp, trainSchedule, locations.get(check(position, locations.size())));
+		case TRAVEL:
+			final var connections = problem.map().connections();
+			return new TravelEvent(timestamp, trainSchedule, connections.get(check(position, connections.size())));
+		case ARRIVE:
+			return new ArriveEvent(timestamp, trainSchedule, locations.get(check(position, locations.size())));
+		case PAUSE:
+			return new PauseEvent(timestamp, trainSchedule, locations.get(check(position, locations.size())));
+		case RESUME:
+			return new ResumeEvent(timestamp, trainSchedule, locations.get(check(position, locations.size())));
+		case FINISH:
+			return new FinishEvent(timestamp, trainSchedule);
+		default:
+			throw new IOException(String.format("Unknown event tag %d in event log!", tag));
+		}
+	}
+
+	private static int check(final int index, final int size) throws IOException {
+		if (index < 0 || index >= size)
+			throw new IOException(String.format("Index %d in event log is out of range!", index));
+		return index;
+	}
+
+	static void putVarLong(final ByteBuffer buffer, final long value) {
+		long rest = value;
+		while ((rest & ~0x7FL) != 0) {
+			buffer.put((byte) (rest & 0x7F | 0x80));
+			rest >>>= 7;
+		}
+		buffer.put((byte) rest);
+	}
+
+	static void putVarInt(final ByteBuffer buffer, final int value) {
+		putVarLong(buffer, value & 0xFFFFFFFFL);
+	}
+
+	static void putZigZag(final ByteBuffer buffer, final long value) {
+		putVarLong(buffer, value << 1 ^ value >> 63);
+	}
+
+	static long getVarLong(final ByteBuffer buffer) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("Malformed varint in event log!");
+	}
+
+	static int getVarInt(final ByteBuffer buffer) throws IOException {
+		final long value = getVarLong(buffer);
+		if (value > Integer.MAX_VALUE)
+			throw new IOException(String.format("Index %d in event log is too large!", value));
+		return (int) value;
+	}
+
+	static long getZigZag(final ByteBuffer buffer) throws IOException {
+		final long value = getVarLong(buffer);
+		return value >>> 1 ^ -(value & 1);
+	}
+}
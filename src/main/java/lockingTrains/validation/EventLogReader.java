@@ -0,0 +1,129 @@
+package lockingTrains.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import lockingTrains.shared.Problem;
+
+/**
+ * Reads a file written by an {@link EventLogWriter} back as {@link TrainEvent
+ * train events}, one at a time. The problem must be the one that was
+ * simulated, e.g. parsed again from the same files, since the log only stores
+ * the indices of schedules, locations and connections.
+ */
+public class EventLogReader implements Closeable {
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final Problem problem;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private boolean end;
+	private long last;
+
+	/**
+	 * Opens the file and checks its header against the problem.
+	 *
+	 * @param file    to read.
+	 * @param problem the simulated problem.
+	 *
+	 * @throws IOException if the file cannot be read or does not belong to the
+	 *                     problem.
+	 */
+	public EventLogReader(final Path file, final Problem problem) throws IOException {
+		this.problem = problem;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		buffer.flip();
+
+		try {
+			fill();
+			if (buffer.remaining() < 5 || buffer.getInt() != EventLogFormat.MAGIC)
+				throw new IOException(String.format("%s is not an event log!", file));
+			final byte version = buffer.get();
+			if (version != EventLogFormat.VERSION)
+				throw new IOException(String.format("Unsupported event log version %d!", version));
+
+			final int schedules = EventLogFormat.getVarInt(buffer);
+			final int locations = EventLogFormat.getVarInt(buffer);
+			final int connections = EventLogFormat.getVarInt(buffer);
+			if (schedules != problem.schedules().size() || locations != problem.map().locations().size()
+					|| connections != problem.map().connections().size())
+				throw new IOException(String.format(
+						"Event log of %d schedules, %d locations and %d connections does not belong to the problem!",
+						schedules, locations, connections));
+		} catch (IOException | BufferUnderflowException e) {
+			channel.close();
+			if (e instanceof IOException)
+				throw (IOException) e;
+			throw new IOException(String.format("%s is not an event log!", file), e);
+		}
+	}
+
+	/**
+	 * Refills the buffer if it may not hold a whole event anymore.
+	 */
+	private void fill() throws IOException {
+		if (end || buffer.remaining() >= EventLogFormat.MAX_EVENT_BYTES)
+			return;
+		buffer.compact();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				end = true;
+				break;
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Reads the next event.
+	 *
+	 * @return The event, or {@code null} at the end of the log.
+	 *
+	 * @throws IOException if the file cannot be read or is corrupt.
+	 */
+	public TrainEvent next() throws IOException {
+		fill();
+		if (!buffer.hasRemaining())
+			return null;
+
+		try {
+			final byte tag = buffer.get();
+			final long timestamp = last + EventLogFormat.getZigZag(buffer);
+			last = timestamp;
+			final int schedule = tag == EventLogFormat.DONE ? 0 : EventLogFormat.getVarInt(buffer);
+			final int position = EventLogFormat.hasPosition(tag) ? EventLogFormat.getVarInt(buffer) : 0;
+			return EventLogFormat.event(tag, timestamp, problem, schedule, position);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Event log ends in the middle of an event!", e);
+		}
+	}
+
+	/**
+	 * Replays all remaining events on a recorder.
+	 *
+	 * @param recorder to replay on.
+	 *
+	 * @return The number of replayed events.
+	 *
+	 * @throws IOException if the file cannot be read or is corrupt.
+	 */
+	public long replay(final Recorder recorder) throws IOException {
+		long count = 0;
+		for (var event = next(); event != null; event = next()) {
+			event.replay(recorder);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
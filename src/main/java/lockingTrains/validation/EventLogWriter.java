@@ -0,0 +1,195 @@
+package lockingTrains.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * Implements the {@link Recorder} interface for the purpose of archiving the
+ * events in a compact binary file, see {@link EventLogFormat}. Events are
+ * encoded into a buffer as they come and written out whenever it is full, so
+ * memory use does not grow with the length of the simulation. Read the file
+ * with an {@link EventLogReader} and the same problem.
+ * <p>
+ * Everything is written once {@link #done()} is called. Call {@link #close()}
+ * afterwards, or instead if the simulation fails. Write errors are thrown as
+ * {@link UncheckedIOException}.
+ */
+public class EventLogWriter extends Recorder implements Closeable {
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final HashMap<Integer, Integer> schedules;
+	private long last;
+
+	/**
+	 * Creates or truncates the file and writes the header.
+	 *
+	 * @param file    to write to.
+	 * @param problem the simulated problem.
+	 *
+	 * @throws IOException if the file cannot be opened or written.
+	 */
+	public EventLogWriter(final Path file, final Problem problem) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		this.schedules = new HashMap<>();
+		for (int i = 0; i < problem.schedules().size(); i++)
+			schedules.put(problem.schedules().get(i).id(), i);
+
+		buffer.putInt(EventLogFormat.MAGIC);
+		buffer.put(EventLogFormat.VERSION);
+		EventLogFormat.putVarInt(buffer, problem.schedules().size());
+		EventLogFormat.putVarInt(buffer, problem.map().locations().size());
+		EventLogFormat.putVarInt(buffer, problem.map().connections().size());
+	}
+
+	private void event(final byte tag, final long timestamp) {
+		if (buffer.remaining() < EventLogFormat.MAX_EVENT_BYTES) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		buffer.put(tag);
+		EventLogFormat.putZigZag(buffer, timestamp - last);
+		last = timestamp;
+	}
+
+	private void event(final byte tag, final long timestamp, final TrainSchedule schedule) {
+		final var index = schedules.get(schedule.id());
+		if (index == null)
+			throw new IllegalArgumentException(String.format("Schedule %d is not part of the problem!", schedule.id()));
+		event(tag, timestamp);
+		EventLogFormat.putVarInt(buffer, index);
+	}
+
+	private void event(final byte tag, final long timestamp, final TrainSchedule schedule, final Location location) {
+		event(tag, timestamp, schedule);
+		EventLogFormat.putVarInt(buffer, location.getRomanAndAntoineID());
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Writes out the buffered events and closes the file. Calling it again has no
+	 * effect.
+	 *
+	 * @throws IOException if the file cannot be written.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Override
+	public synchronized void start(final TrainSchedule schedule) {
+		start(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void start(final long timestamp, final TrainSchedule schedule) {
+		event(EventLogFormat.START, timestamp, schedule);
+	}
+
+	@Override
+	public synchronized void leave(final TrainSchedule schedule, final Location location) {
+		leave(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+		event(EventLogFormat.LEAVE, timestamp, schedule, location);
+	}
+
+	@Override
+	public synchronized void travel(final TrainSchedule schedule, final Connection section) {
+		travel(System.currentTimeMillis(), schedule, section);
+	}
+
+	@Override
+	void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+		event(EventLogFormat.TRAVEL, timestamp, schedule);
+		EventLogFormat.putVarInt(buffer, section.getRomanAndAntoineID());
+	}
+
+	@Override
+	public synchronized void arrive(final TrainSchedule schedule, final Location location) {
+		arrive(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+		event(EventLogFormat.ARRIVE, timestamp, schedule, location);
+	}
+
+	@Override
+	public synchronized void pause(final TrainSchedule schedule, final Location location) {
+		pause(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+		event(EventLogFormat.PAUSE, timestamp, schedule, location);
+	}
+
+	@Override
+	public synchronized void resume(final TrainSchedule schedule, final Location location) {
+		resume(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+		event(EventLogFormat.RESUME, timestamp, schedule, location);
+	}
+
+	@Override
+	public synchronized void finish(final TrainSchedule schedule) {
+		finish(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void finish(final long timestamp, final TrainSchedule schedule) {
+		event(EventLogFormat.FINISH, timestamp, schedule);
+	}
+
+	@Override
+	public synchronized void done() {
+		done(System.currentTimeMillis());
+	}
+
+	@Override
+	void done(final long timestamp) {
+		event(EventLogFormat.DONE, timestamp);
+		try {
+			flush();
+			channel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
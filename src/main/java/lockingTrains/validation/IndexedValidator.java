@@ -0,0 +1,307 @@
+package lockingTrains.validation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TimeScale;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * Implements the {@link Recorder} interface like {@link Validator}, checking
+ * exactly the same rules, but with its state in arrays instead of hash maps.
+ * <p>
+ * Every started train gets a dense slot, found from the schedule id through an
+ * array. Per slot, arrays hold where the train stands, leaves, travels,
+ * arrives or pauses. Locations and connections are indexed by
+ * {@link Location#getRomanAndAntoineID()} and
+ * {@link Connection#getRomanAndAntoineID()}, so they must belong to the map of
+ * the problem. Counters per location and connection replace the scans over all
+ * trains of the {@link Validator}, e.g. for the number of trains heading for a
+ * location. Each event is checked in constant time, and only {@link #start}
+ * allocates, to look up the schedules left with the same origin and
+ * destination.
+ */
+public class IndexedValidator extends Recorder {
+	private static final int NONE = -1;
+
+	private final Problem problem;
+	private final TimeScale timeScale;
+
+	private final PendingSchedules toStart;
+	private final int firstId;
+	private final int[] slotById;
+	private final HashMap<Integer, Integer> otherSlots;
+	private int started;
+	private int finished;
+
+	private final int[] position;
+	private final int[] leaving;
+	private final int[] arriving;
+	private final int[] travelling;
+	private final int[] pausing;
+	private final long[] eta;
+	private final boolean[] done;
+
+	private final int[] positioned;
+	private final int[] heading;
+	private final int[] onConnection;
+	private final int[] capacities;
+
+	/**
+	 * Constructs a new validator for a simulation in real time.
+	 *
+	 * @param problem the problem to validate simulator action for.
+	 */
+	public IndexedValidator(final Problem problem) {
+		this(problem, TimeScale.REAL);
+	}
+
+	/**
+	 * Constructs a new validator.
+	 *
+	 * @param problem   the problem to validate simulator action for.
+	 * @param timeScale the simulation runs at, arrivals are expected by the scaled
+	 *                  travel times.
+	 */
+	public IndexedValidator(final Problem problem, final TimeScale timeScale) {
+		this.problem = problem;
+		this.timeScale = timeScale;
+		final var schedules = problem.schedules();
+		final var locations = problem.map().locations();
+		final int trains = schedules.size();
+
+		this.toStart = new PendingSchedules(problem);
+
+		int first = 0;
+		int last = -1;
+		if (trains > 0) {
+			first = Integer.MAX_VALUE;
+			last = Integer.MIN_VALUE;
+			for (final var schedule : schedules) {
+				first = Math.min(first, schedule.id());
+				last = Math.max(last, schedule.id());
+			}
+		}
+		//schedules of one problem are created together, so their ids are almost dense
+		final long span = (long) last - first + 1;
+		this.firstId = first;
+		this.slotById = new int[span <= 4L * trains + 64 ? (int) span : 0];
+		this.otherSlots = new HashMap<>();
+
+		this.position = filled(trains);
+		this.leaving = filled(trains);
+		this.arriving = filled(trains);
+		this.travelling = filled(trains);
+		this.pausing = filled(trains);
+		this.eta = new long[trains];
+		this.done = new boolean[trains];
+
+		this.positioned = new int[locations.size()];
+		this.heading = new int[locations.size()];
+		this.onConnection = new int[problem.map().connections().size()];
+		this.capacities = new int[locations.size()];
+		for (final var location : locations)
+			if (!location.isStation())
+				capacities[location.getRomanAndAntoineID()] = location.capacity();
+	}
+
+	private static int[] filled(final int length) {
+		final var array = new int[length];
+		Arrays.fill(array, NONE);
+		return array;
+	}
+
+	private void assertTrue(boolean condition) {
+		if (!condition)
+			throw new IllegalStateException();
+	}
+
+	/**
+	 * Get the slot of a started train.
+	 *
+	 * @return The slot, or {@link #NONE} if the train was not started.
+	 */
+	private int slot(final TrainSchedule schedule) {
+		final long index = (long) schedule.id() - firstId;
+		if (index >= 0 && index < slotById.length)
+			return slotById[(int) index] - 1;
+		final var slot = otherSlots.get(schedule.id());
+		return slot == null ? NONE : slot;
+	}
+
+	/**
+	 * Get the slot of a started train, failing if it was not started.
+	 */
+	private int startedSlot(final TrainSchedule schedule) {
+		final int slot = slot(schedule);
+		assertTrue(slot != NONE);
+		return slot;
+	}
+
+	private void assign(final TrainSchedule schedule, final int slot) {
+		final long index = (long) schedule.id() - firstId;
+		if (index >= 0 && index < slotById.length)
+			slotById[(int) index] = slot + 1;
+		else
+			otherSlots.put(schedule.id(), slot);
+	}
+
+	@Override
+	public synchronized void start(final TrainSchedule schedule) {
+		start(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void start(final long timestamp, final TrainSchedule schedule) {
+		if (slot(schedule) != NONE)
+			throw new IllegalStateException(String.format("Schedule %d was started twice!", schedule.id()));
+		assertTrue(schedule.origin().isStation());
+		toStart.take(schedule);
+
+		final int slot = started++;
+		assign(schedule, slot);
+		final int origin = schedule.origin().getRomanAndAntoineID();
+		position[slot] = origin;
+		positioned[origin]++;
+	}
+
+	@Override
+	public synchronized void leave(final TrainSchedule schedule, final Location location) {
+		leave(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+		final int slot = startedSlot(schedule);
+		final int id = location.getRomanAndAntoineID();
+		assertTrue(position[slot] == id);
+
+		position[slot] = NONE;
+		positioned[id]--;
+		leaving[slot] = id;
+	}
+
+	@Override
+	public synchronized void travel(final TrainSchedule schedule, final Connection section) {
+		travel(System.currentTimeMillis(), schedule, section);
+	}
+
+	@Override
+	void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+		final int slot = startedSlot(schedule);
+		final int connection = section.getRomanAndAntoineID();
+		assertTrue(onConnection[connection] == 0);
+
+		final int leave = leaving[slot];
+		final int first = section.first().getRomanAndAntoineID();
+		final int second = section.second().getRomanAndAntoineID();
+		assertTrue(leave != NONE);
+		assertTrue(leave == first || leave == second);
+
+		leaving[slot] = NONE;
+
+		final int next = leave == first ? second : first;
+		assertTrue(heading[next] == 0);
+		heading[next]++;
+		arriving[slot] = next;
+		onConnection[connection]++;
+		travelling[slot] = connection;
+
+		eta[slot] = timestamp + timeScale.millis(section.time());
+	}
+
+	@Override
+	public synchronized void arrive(final TrainSchedule schedule, final Location location) {
+		arrive(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+		final int slot = startedSlot(schedule);
+		final int id = location.getRomanAndAntoineID();
+		assertTrue(arriving[slot] != NONE);
+		assertTrue(arriving[slot] == id);
+		assertTrue(travelling[slot] != NONE);
+		assertTrue(location.isStation() || positioned[id] == 0);
+		assertTrue(eta[slot] <= timestamp);
+
+		heading[id]--;
+		arriving[slot] = NONE;
+		onConnection[travelling[slot]]--;
+		travelling[slot] = NONE;
+		position[slot] = id;
+		positioned[id]++;
+	}
+
+	@Override
+	public synchronized void pause(final TrainSchedule schedule, final Location location) {
+		pause(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+		final int slot = startedSlot(schedule);
+		final int id = location.getRomanAndAntoineID();
+		assertTrue(position[slot] == id);
+
+		assertTrue(!location.isStation());
+
+		position[slot] = NONE;
+		positioned[id]--;
+		pausing[slot] = id;
+		assertTrue(capacities[id] > 0);
+		capacities[id]--;
+	}
+
+	@Override
+	public synchronized void resume(final TrainSchedule schedule, final Location location) {
+		resume(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+		final int slot = startedSlot(schedule);
+		final int id = location.getRomanAndAntoineID();
+		assertTrue(pausing[slot] == id);
+
+		assertTrue(!location.isStation());
+
+		pausing[slot] = NONE;
+		position[slot] = id;
+		positioned[id]++;
+		assertTrue(capacities[id] < location.capacity());
+		capacities[id]++;
+	}
+
+	@Override
+	public synchronized void finish(final TrainSchedule schedule) {
+		finish(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void finish(final long timestamp, final TrainSchedule schedule) {
+		final int slot = startedSlot(schedule);
+		assertTrue(travelling[slot] == NONE);
+		assertTrue(!done[slot]);
+		assertTrue(leaving[slot] == NONE);
+		assertTrue(arriving[slot] == NONE);
+		assertTrue(position[slot] == schedule.destination().getRomanAndAntoineID());
+		assertTrue(schedule.destination().isStation());
+
+		done[slot] = true;
+		finished++;
+	}
+
+	@Override
+	public synchronized void done() {
+		done(System.currentTimeMillis());
+	}
+
+	@Override
+	void done(final long timestamp) {
+		assertTrue(problem.schedules().size() == finished);
+	}
+}
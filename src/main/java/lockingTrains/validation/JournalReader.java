@@ -0,0 +1,160 @@
+package lockingTrains.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import lockingTrains.shared.Problem;
+
+/**
+ * Reads a journal written by a {@link JournalRecorder}, also one left behind by
+ * a crashed simulation. Segments are mapped read-only one after the other and
+ * events are decoded straight from the mapping.
+ * <p>
+ * Reading stops at the first record without a commit marker or with a wrong
+ * checksum. Everything before it was recorded completely and in order, so it
+ * can be replayed to find out how far the simulation got and whether it was
+ * valid until then. {@link #isComplete()} tells whether the journal reached
+ * {@link Recorder#done()}.
+ */
+public class JournalReader implements Closeable {
+	private final Path directory;
+	private final Problem problem;
+	private MappedByteBuffer segment;
+	private int segmentNumber;
+	private int recordsPerSegment;
+	private int record;
+	private boolean end;
+	private boolean complete;
+
+	/**
+	 * Maps the first segment and checks its header against the problem.
+	 *
+	 * @param directory of the journal.
+	 * @param problem   the simulated problem.
+	 *
+	 * @throws IOException if the journal cannot be read or does not belong to the
+	 *                     problem.
+	 */
+	public JournalReader(final Path directory, final Problem problem) throws IOException {
+		this.directory = directory;
+		this.problem = problem;
+		this.segment = map(0);
+		if (segment == null)
+			throw new IOException(String.format("%s contains no journal!", directory));
+	}
+
+	/**
+	 * Maps a segment and checks its header.
+	 *
+	 * @return The segment, or {@code null} if it does not exist.
+	 */
+	private MappedByteBuffer map(final int number) throws IOException {
+		final var file = JournalRecorder.segmentFile(directory, number);
+		if (!Files.exists(file))
+			return null;
+
+		final MappedByteBuffer buffer;
+		try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < JournalRecorder.RECORD_BYTES)
+				throw new IOException(String.format("%s is not a journal segment!", file));
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt(0) != JournalRecorder.MAGIC)
+			throw new IOException(String.format("%s is not a journal segment!", file));
+		if (buffer.getInt(4) != JournalRecorder.VERSION)
+			throw new IOException(String.format("Unsupported journal version %d!", buffer.getInt(4)));
+		final int records = buffer.getInt(8);
+		if (records <= 0 || (long) (records + 1) * JournalRecorder.RECORD_BYTES != buffer.capacity()
+				|| number > 0 && records != recordsPerSegment)
+			throw new IOException(String.format("%s has an invalid size!", file));
+		if (buffer.getInt(12) != problem.schedules().size() || buffer.getInt(16) != problem.map().locations().size()
+				|| buffer.getInt(20) != problem.map().connections().size())
+			throw new IOException(String.format(
+					"Journal of %d schedules, %d locations and %d connections does not belong to the problem!",
+					buffer.getInt(12), buffer.getInt(16), buffer.getInt(20)));
+
+		recordsPerSegment = records;
+		return buffer;
+	}
+
+	/**
+	 * Reads the next event.
+	 *
+	 * @return The event, or {@code null} at the end of the recorded events.
+	 *
+	 * @throws IOException if a segment cannot be read or a committed record is
+	 *                     invalid.
+	 */
+	public TrainEvent next() throws IOException {
+		if (end)
+			return null;
+		if (record == recordsPerSegment) {
+			segment = map(++segmentNumber);
+			record = 0;
+			if (segment == null) {
+				end = true;
+				return null;
+			}
+		}
+
+		final int offset = (record + 1) * JournalRecorder.RECORD_BYTES;
+		final int marker = segment.getInt(offset + 20);
+		final long timestamp = segment.getLong(offset);
+		final int schedule = segment.getInt(offset + 8);
+		final int position = segment.getInt(offset + 12);
+		final byte tag = (byte) (marker & 0xFF);
+		if ((marker & ~0xFF) != JournalRecorder.COMMITTED
+				|| segment.getInt(offset + 16) != JournalRecorder.checksum(timestamp, schedule, position, tag)) {
+			end = true;
+			return null;
+		}
+
+		record++;
+		if (tag == EventLogFormat.DONE)
+			complete = true;
+		return EventLogFormat.event(tag, timestamp, problem, schedule, position);
+	}
+
+	/**
+	 * Replays all remaining events on a recorder.
+	 *
+	 * @param recorder to replay on.
+	 *
+	 * @return The number of replayed events.
+	 *
+	 * @throws IOException if a segment cannot be read or a committed record is
+	 *                     invalid.
+	 */
+	public long replay(final Recorder recorder) throws IOException {
+		long count = 0;
+		for (var event = next(); event != null; event = next()) {
+			event.replay(recorder);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks whether the end of the simulation was read.
+	 *
+	 * @return {@code true} once the event of {@link Recorder#done()} was read.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Releases the mapped segment.
+	 */
+	@Override
+	public void close() {
+		segment = null;
+		end = true;
+	}
+}
@@ -0,0 +1,279 @@
+package lockingTrains.validation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * Implements the {@link Recorder} interface for the purpose of keeping a
+ * journal of the events that survives a crash of the simulation. Events are
+ * written as fixed-size records into memory-mapped segment files, so
+ * recording an event is a few memory stores and the operating system writes
+ * the pages out in the background. Read the journal with a
+ * {@link JournalReader} and the same problem, also after a crash.
+ * <p>
+ * Every segment starts with a header record, followed by a fixed number of
+ * event records of {@link #RECORD_BYTES} bytes each: the timestamp, the index
+ * of the schedule in the problem, the index of the location or connection in
+ * the map (or {@code -1}), a checksum and, written last, a commit marker
+ * containing the tag of {@link EventLogFormat}. Segments are created
+ * zero-filled, so records not yet written have no marker.
+ * <p>
+ * Callers claim records with an atomic increment and do not wait for each
+ * other. The order of the claims is the order of the journal, so events that
+ * depend on each other keep their order. Only {@link #done()} and
+ * {@link #close()} force the segments to the disk.
+ */
+public class JournalRecorder extends Recorder implements Closeable {
+	/**
+	 * Size of a record in bytes.
+	 */
+	public static final int RECORD_BYTES = 24;
+
+	/**
+	 * Number of event records per segment if not given otherwise.
+	 */
+	public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 18;
+
+	static final int MAGIC = 0x4C544A52;
+	static final int VERSION = 1;
+	static final int COMMITTED = 0x4A000000;
+
+	private final Path directory;
+	private final int recordsPerSegment;
+	private final Problem problem;
+	private final HashMap<Integer, Integer> schedules;
+	private final AtomicLong claimed;
+	private volatile MappedByteBuffer[] segments;
+	private boolean closed;
+
+	/**
+	 * Constructs a new {@link JournalRecorder} with
+	 * {@link #DEFAULT_RECORDS_PER_SEGMENT} records per segment.
+	 *
+	 * @param directory to put the segments into, created if missing. It must not
+	 *                  contain segments already.
+	 * @param problem   the simulated problem.
+	 *
+	 * @throws IOException if the directory or the first segment cannot be
+	 *                     created.
+	 */
+	public JournalRecorder(final Path directory, final Problem problem) throws IOException {
+		this(directory, problem, DEFAULT_RECORDS_PER_SEGMENT);
+	}
+
+	/**
+	 * Constructs a new {@link JournalRecorder}.
+	 *
+	 * @param directory         to put the segments into, created if missing. It
+	 *                          must not contain segments already.
+	 * @param problem           the simulated problem.
+	 * @param recordsPerSegment number of event records in each segment file.
+	 *
+	 * @throws IOException if the directory or the first segment cannot be
+	 *                     created.
+	 */
+	public JournalRecorder(final Path directory, final Problem problem, final int recordsPerSegment)
+			throws IOException {
+		if (recordsPerSegment <= 0 || recordsPerSegment >= Integer.MAX_VALUE / RECORD_BYTES)
+			throw new IllegalArgumentException(String.format("Invalid segment size of %d records!", recordsPerSegment));
+
+		this.directory = Files.createDirectories(directory);
+		this.recordsPerSegment = recordsPerSegment;
+		this.problem = problem;
+		this.schedules = new HashMap<>();
+		for (int i = 0; i < problem.schedules().size(); i++)
+			schedules.put(problem.schedules().get(i).id(), i);
+		this.claimed = new AtomicLong();
+		this.segments = new MappedByteBuffer[0];
+		segment(0);
+	}
+
+	/**
+	 * Get the file of a segment.
+	 *
+	 * @param directory of the journal.
+	 * @param segment   number, starting at {@code 0}.
+	 *
+	 * @return The path of the segment file.
+	 */
+	static Path segmentFile(final Path directory, final int segment) {
+		return directory.resolve(String.format("journal-%06d.seg", segment));
+	}
+
+	/**
+	 * Get a segment, mapping it if it does not exist yet.
+	 */
+	private MappedByteBuffer segment(final int segment) {
+		final var known = segments;
+		if (segment < known.length && known[segment] != null)
+			return known[segment];
+		return map(segment);
+	}
+
+	private synchronized MappedByteBuffer map(final int segment) {
+		if (closed)
+			throw new IllegalStateException("The journal is already closed!");
+		if (segment < segments.length && segments[segment] != null)
+			return segments[segment];
+
+		final var file = segmentFile(directory, segment);
+		try (final var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			final var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					(long) (recordsPerSegment + 1) * RECORD_BYTES);
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, recordsPerSegment);
+			buffer.putInt(12, problem.schedules().size());
+			buffer.putInt(16, problem.map().locations().size());
+			buffer.putInt(20, problem.map().connections().size());
+
+			final var grown = Arrays.copyOf(segments, Math.max(segments.length, segment + 1));
+			grown[segment] = buffer;
+			segments = grown;
+			return buffer;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static int checksum(final long timestamp, final int schedule, final int position, final byte tag) {
+		int hash = Long.hashCode(timestamp);
+		hash = hash * 31 + schedule;
+		hash = hash * 31 + position;
+		return hash * 31 + tag;
+	}
+
+	private void record(final byte tag, final long timestamp, final int schedule, final int position) {
+		final long record = claimed.getAndIncrement();
+		final var buffer = segment((int) (record / recordsPerSegment));
+		final int offset = (int) (record % recordsPerSegment + 1) * RECORD_BYTES;
+
+		buffer.putLong(offset, timestamp);
+		buffer.putInt(offset + 8, schedule);
+		buffer.putInt(offset + 12, position);
+		buffer.putInt(offset + 16, checksum(timestamp, schedule, position, tag));
+		buffer.putInt(offset + 20, COMMITTED | tag);
+	}
+
+	private int schedule(final TrainSchedule schedule) {
+		final var index = schedules.get(schedule.id());
+		if (index == null)
+			throw new IllegalArgumentException(String.format("Schedule %d is not part of the problem!", schedule.id()));
+		return index;
+	}
+
+	/**
+	 * Forces all segments to the disk and releases them. Recording afterwards
+	 * fails. Calling it again has no effect.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+		force();
+		closed = true;
+		segments = new MappedByteBuffer[0];
+	}
+
+	private synchronized void force() {
+		for (final var segment : segments)
+			if (segment != null)
+				segment.force();
+	}
+
+	@Override
+	public void start(final TrainSchedule schedule) {
+		start(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void start(final long timestamp, final TrainSchedule schedule) {
+		record(EventLogFormat.START, timestamp, schedule(schedule), -1);
+	}
+
+	@Override
+	public void leave(final TrainSchedule schedule, final Location location) {
+		leave(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+		record(EventLogFormat.LEAVE, timestamp, schedule(schedule), location.getRomanAndAntoineID());
+	}
+
+	@Override
+	public void travel(final TrainSchedule schedule, final Connection section) {
+		travel(System.currentTimeMillis(), schedule, section);
+	}
+
+	@Override
+	void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+		record(EventLogFormat.TRAVEL, timestamp, schedule(schedule), section.getRomanAndAntoineID());
+	}
+
+	@Override
+	public void arrive(final TrainSchedule schedule, final Location location) {
+		arrive(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+		record(EventLogFormat.ARRIVE, timestamp, schedule(schedule), location.getRomanAndAntoineID());
+	}
+
+	@Override
+	public void pause(final TrainSchedule schedule, final Location location) {
+		pause(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+		record(EventLogFormat.PAUSE, timestamp, schedule(schedule), location.getRomanAndAntoineID());
+	}
+
+	@Override
+	public void resume(final TrainSchedule schedule, final Location location) {
+		resume(System.currentTimeMillis(), schedule, location);
+	}
+
+	@Override
+	void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+		record(EventLogFormat.RESUME, timestamp, schedule(schedule), location.getRomanAndAntoineID());
+	}
+
+	@Override
+	public void finish(final TrainSchedule schedule) {
+		finish(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void finish(final long timestamp, final TrainSchedule schedule) {
+		record(EventLogFormat.FINISH, timestamp, schedule(schedule), -1);
+	}
+
+	@Override
+	public void done() {
+		done(System.currentTimeMillis());
+	}
+
+	@Override
+	void done(final long timestamp) {
+		record(EventLogFormat.DONE, timestamp, -1, -1);
+		force();
+	}
+}
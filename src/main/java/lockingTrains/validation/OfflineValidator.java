@@ -0,0 +1,608 @@
+package lockingTrains.validation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TimeScale;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * Checks a recorded list of events against the rules of {@link Validator}
+ * after the simulation, so that the simulation itself only needs a cheap
+ * recorder like a {@link BufferedLogger} or an {@link EventLogWriter}.
+ * <p>
+ * The events are sorted by timestamp, keeping the recorded order for equal
+ * ones, and then checked in two parallel passes on a {@link ForkJoinPool}:
+ * <ol>
+ * <li>The events of every schedule are checked on their own, e.g. that a
+ * train only leaves where it stands and arrives where it headed for, not
+ * before its travel time is over. This pass also finds the location every
+ * travel heads for and the connection every arrival comes from.</li>
+ * <li>The events touching every connection and location are checked on their
+ * own: a connection is used by one train at a time, one train at a time heads
+ * for a location, a train only arrives at a location that is not a station if
+ * no other train stands there, and parked trains fit into the parking
+ * places.</li>
+ * </ol>
+ * Starts are matched against the schedules of the problem and {@code done}
+ * against the finished trains in a short sequential pass. Of all violations,
+ * the one of the earliest event is reported.
+ * <p>
+ * The travel times are scaled with the given {@link TimeScale}, which must be
+ * the one the simulation ran at.
+ */
+public class OfflineValidator {
+	private static final int NONE = -1;
+
+	private final Problem problem;
+	private final TimeScale timeScale;
+	private final ForkJoinPool pool;
+
+	/**
+	 * A rule broken by a recorded event.
+	 */
+	public static class Violation {
+		private final int index;
+		private final TrainEvent event;
+		private final String message;
+		private final List<TrainEvent> context;
+
+		Violation(final int index, final TrainEvent event, final String message, final List<TrainEvent> context) {
+			this.index = index;
+			this.event = event;
+			this.message = message;
+			this.context = context;
+		}
+
+		/**
+		 * Get the position of the event in the checked list.
+		 *
+		 * @return The index of the event.
+		 */
+		public int index() {
+			return index;
+		}
+
+		/**
+		 * Get the event breaking the rule.
+		 *
+		 * @return The event.
+		 */
+		public TrainEvent event() {
+			return event;
+		}
+
+		/**
+		 * Get what is wrong with the event.
+		 *
+		 * @return The description of the violation.
+		 */
+		public String message() {
+			return message;
+		}
+
+		/**
+		 * Get the events before the violating one that it conflicts with, e.g. the
+		 * last events of the same train and of a train in the way.
+		 *
+		 * @return The context of the violation, oldest first.
+		 */
+		public List<TrainEvent> context() {
+			return context;
+		}
+
+		@Override
+		public String toString() {
+			final var builder = new StringBuilder(
+					String.format("Event #%d (%s) is invalid: %s", index, event, message));
+			for (final var before : context)
+				builder.append(System.lineSeparator()).append("  after ").append(before);
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * A violation found by one of the passes, still by sorted position.
+	 */
+	private static class Finding {
+		final int position;
+		final String message;
+		final int conflict;
+
+		Finding(final int position, final String message, final int conflict) {
+			this.position = position;
+			this.message = message;
+			this.conflict = conflict;
+		}
+
+		static Finding first(final Finding a, final Finding b) {
+			if (a == null)
+				return b;
+			if (b == null)
+				return a;
+			return a.position <= b.position ? a : b;
+		}
+	}
+
+	/**
+	 * The recorded events, decoded into arrays and sorted by timestamp.
+	 */
+	private class Events extends Recorder {
+		final int size;
+		final TrainEvent[] events;
+		final int[] original;
+		final byte[] tag;
+		final long[] timestamp;
+		final TrainSchedule[] schedule;
+		final Location[] location;
+		final Connection[] connection;
+
+		/**
+		 * Filled by the first pass: the location a travel heads for, the connection
+		 * an arrival comes from, and whether the event is valid for its train.
+		 */
+		final int[] target;
+		final int[] via;
+		final boolean[] valid;
+
+		private int current;
+
+		Events(final List<? extends TrainEvent> recorded) {
+			this.size = recorded.size();
+			this.original = sortedByTimestamp(recorded);
+			this.events = new TrainEvent[size];
+			this.tag = new byte[size];
+			this.timestamp = new long[size];
+			this.schedule = new TrainSchedule[size];
+			this.location = new Location[size];
+			this.connection = new Connection[size];
+			this.target = new int[size];
+			this.via = new int[size];
+			this.valid = new boolean[size];
+			Arrays.fill(target, NONE);
+			Arrays.fill(via, NONE);
+
+			for (current = 0; current < size; current++) {
+				events[current] = recorded.get(original[current]);
+				events[current].replay(this);
+			}
+		}
+
+		private int[] sortedByTimestamp(final List<? extends TrainEvent> recorded) {
+			boolean sorted = true;
+			for (int i = 1; i < recorded.size() && sorted; i++)
+				sorted = recorded.get(i - 1).timestamp <= recorded.get(i).timestamp;
+			if (sorted)
+				return IntStream.range(0, recorded.size()).toArray();
+			//a stable sort keeps the recorded order of events with the same timestamp
+			return IntStream.range(0, recorded.size()).boxed()
+					.sorted(Comparator.comparingLong(i -> recorded.get(i).timestamp)).mapToInt(Integer::intValue)
+					.toArray();
+		}
+
+		private void decode(final byte tag, final long timestamp, final TrainSchedule schedule) {
+			this.tag[current] = tag;
+			this.timestamp[current] = timestamp;
+			this.schedule[current] = schedule;
+		}
+
+		private void decode(final byte tag, final long timestamp, final TrainSchedule schedule,
+				final Location location) {
+			decode(tag, timestamp, schedule);
+			this.location[current] = location;
+		}
+
+		@Override
+		public void start(final TrainSchedule schedule) {
+			start(System.currentTimeMillis(), schedule);
+		}
+
+		@Override
+		void start(final long timestamp, final TrainSchedule schedule) {
+			decode(EventLogFormat.START, timestamp, schedule);
+		}
+
+		@Override
+		public void leave(final TrainSchedule schedule, final Location location) {
+			leave(System.currentTimeMillis(), schedule, location);
+		}
+
+		@Override
+		void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+			decode(EventLogFormat.LEAVE, timestamp, schedule, location);
+		}
+
+		@Override
+		public void travel(final TrainSchedule schedule, final Connection section) {
+			travel(System.currentTimeMillis(), schedule, section);
+		}
+
+		@Override
+		void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+			decode(EventLogFormat.TRAVEL, timestamp, schedule);
+			this.connection[current] = section;
+		}
+
+		@Override
+		public void arrive(final TrainSchedule schedule, final Location location) {
+			arrive(System.currentTimeMillis(), schedule, location);
+		}
+
+		@Override
+		void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+			decode(EventLogFormat.ARRIVE, timestamp, schedule, location);
+		}
+
+		@Override
+		public void pause(final TrainSchedule schedule, final Location location) {
+			pause(System.currentTimeMillis(), schedule, location);
+		}
+
+		@Override
+		void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+			decode(EventLogFormat.PAUSE, timestamp, schedule, location);
+		}
+
+		@Override
+		public void resume(final TrainSchedule schedule, final Location location) {
+			resume(System.currentTimeMillis(), schedule, location);
+		}
+
+		@Override
+		void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+			decode(EventLogFormat.RESUME, timestamp, schedule, location);
+		}
+
+		@Override
+		public void finish(final TrainSchedule schedule) {
+			finish(System.currentTimeMillis(), schedule);
+		}
+
+		@Override
+		void finish(final long timestamp, final TrainSchedule schedule) {
+			decode(EventLogFormat.FINISH, timestamp, schedule);
+		}
+
+		@Override
+		public void done() {
+			done(System.currentTimeMillis());
+		}
+
+		@Override
+		void done(final long timestamp) {
+			decode(EventLogFormat.DONE, timestamp, null);
+		}
+	}
+
+	/**
+	 * Constructs a new offline validator for a simulation in real time, running
+	 * on the common {@link ForkJoinPool}.
+	 *
+	 * @param problem the problem to validate the recorded events for.
+	 */
+	public OfflineValidator(final Problem problem) {
+		this(problem, TimeScale.REAL);
+	}
+
+	/**
+	 * Constructs a new offline validator running on the common
+	 * {@link ForkJoinPool}.
+	 *
+	 * @param problem   the problem to validate the recorded events for.
+	 * @param timeScale the simulation ran at.
+	 */
+	public OfflineValidator(final Problem problem, final TimeScale timeScale) {
+		this(problem, timeScale, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a new offline validator for a simulation in real time.
+	 *
+	 * @param problem the problem to validate the recorded events for.
+	 * @param pool    to run the checks on.
+	 */
+	public OfflineValidator(final Problem problem, final ForkJoinPool pool) {
+		this(problem, TimeScale.REAL, pool);
+	}
+
+	/**
+	 * Constructs a new offline validator.
+	 *
+	 * @param problem   the problem to validate the recorded events for.
+	 * @param timeScale the simulation ran at.
+	 * @param pool      to run the checks on.
+	 */
+	public OfflineValidator(final Problem problem, final TimeScale timeScale, final ForkJoinPool pool) {
+		this.problem = problem;
+		this.timeScale = timeScale;
+		this.pool = pool;
+	}
+
+	/**
+	 * Checks all events of an event log file.
+	 *
+	 * @param reader of the event log, at its start.
+	 *
+	 * @return The first violation, or {@code null} if all events are valid.
+	 *
+	 * @throws IOException if the event log cannot be read.
+	 */
+	public Violation check(final EventLogReader reader) throws IOException {
+		final var recorded = new ArrayList<TrainEvent>();
+		for (var event = reader.next(); event != null; event = reader.next())
+			recorded.add(event);
+		return check(recorded);
+	}
+
+	/**
+	 * Checks recorded events, e.g. {@link Logger#eventLog()}.
+	 *
+	 * @param recorded events of a simulation of the problem.
+	 *
+	 * @return The first violation, or {@code null} if all events are valid.
+	 */
+	public Violation check(final List<? extends TrainEvent> recorded) {
+		final var events = new Events(recorded);
+
+		final var trains = IntStream.range(0, events.size).filter(i -> events.tag[i] != EventLogFormat.DONE)
+				.boxed().collect(Collectors.groupingBy(i -> events.schedule[i].id())).values();
+		var finding = pool.submit(() -> trains.parallelStream().map(train -> checkTrain(events, train))
+				.reduce(null, Finding::first)).join();
+
+		finding = Finding.first(finding, checkSchedules(events));
+
+		final int connections = problem.map().connections().size();
+		final var touching = new ArrayList<List<Integer>>(connections + problem.map().locations().size());
+		for (int i = 0; i < connections + problem.map().locations().size(); i++)
+			touching.add(new ArrayList<>());
+		for (int i = 0; i < events.size; i++) {
+			if (!events.valid[i])
+				continue;
+			if (events.connection[i] != null)
+				touching.get(events.connection[i].getRomanAndAntoineID()).add(i);
+			if (events.via[i] != NONE)
+				touching.get(events.via[i]).add(i);
+			if (events.location[i] != null)
+				touching.get(connections + events.location[i].getRomanAndAntoineID()).add(i);
+			if (events.target[i] != NONE)
+				touching.get(connections + events.target[i]).add(i);
+			if (events.tag[i] == EventLogFormat.START)
+				touching.get(connections + events.schedule[i].origin().getRomanAndAntoineID()).add(i);
+		}
+		finding = Finding.first(finding, pool.submit(() -> IntStream.range(0, touching.size()).parallel()
+				.mapToObj(slot -> slot < connections ? checkConnection(events, touching.get(slot))
+						: checkLocation(events, problem.map().locations().get(slot - connections), touching.get(slot)))
+				.reduce(null, Finding::first)).join());
+
+		if (finding == null)
+			return null;
+		return violation(events, finding);
+	}
+
+	/**
+	 * Checks the events of a single train like the {@link Validator} does.
+	 */
+	private Finding checkTrain(final Events events, final List<Integer> train) {
+		boolean started = false;
+		boolean finished = false;
+		Location position = null;
+		Location leaving = null;
+		Location arriving = null;
+		Connection travelling = null;
+		Location pausing = null;
+		long eta = 0;
+
+		for (final int i : train) {
+			final var schedule = events.schedule[i];
+			final var location = events.location[i];
+			final byte tag = events.tag[i];
+			if (tag != EventLogFormat.START && !started)
+				return new Finding(i, String.format("Schedule %d was not started", schedule.id()), NONE);
+
+			switch (tag) {
+			case EventLogFormat.START:
+				if (started)
+					return new Finding(i, String.format("Schedule %d was started twice", schedule.id()), NONE);
+				if (!schedule.origin().isStation())
+					return new Finding(i, String.format("Origin %s is no station", schedule.origin().name()), NONE);
+				started = true;
+				position = schedule.origin();
+				break;
+			case EventLogFormat.LEAVE:
+				if (position == null || !position.equals(location))
+					return new Finding(i, String.format("The train leaves %s, but stands at %s", location.name(),
+							name(position)), NONE);
+				position = null;
+				leaving = location;
+				break;
+			case EventLogFormat.TRAVEL:
+				final var section = events.connection[i];
+				if (leaving == null)
+					return new Finding(i, "The train travels without leaving a location", NONE);
+				if (!leaving.equals(section.first()) && !leaving.equals(section.second()))
+					return new Finding(i, String.format("The train left %s, which %s does not start at",
+							leaving.name(), section), NONE);
+				arriving = leaving.equals(section.first()) ? section.second() : section.first();
+				travelling = section;
+				eta = events.timestamp[i] + timeScale.millis(section.time());
+				leaving = null;
+				events.target[i] = arriving.getRomanAndAntoineID();
+				break;
+			case EventLogFormat.ARRIVE:
+				if (arriving == null || travelling == null || !arriving.equals(location))
+					return new Finding(i, String.format("The train arrives at %s, but heads for %s",
+							location.name(), name(arriving)), NONE);
+				if (eta > events.timestamp[i])
+					return new Finding(i, String.format("The train arrives %d ms early",
+							eta - events.timestamp[i]), NONE);
+				events.via[i] = travelling.getRomanAndAntoineID();
+				arriving = null;
+				travelling = null;
+				position = location;
+				break;
+			case EventLogFormat.PAUSE:
+				if (position == null || !position.equals(location))
+					return new Finding(i, String.format("The train pauses at %s, but stands at %s", location.name(),
+							name(position)), NONE);
+				if (location.isStation())
+					return new Finding(i, String.format("The train pauses at station %s", location.name()), NONE);
+				position = null;
+				pausing = location;
+				break;
+			case EventLogFormat.RESUME:
+				if (pausing == null || !pausing.equals(location))
+					return new Finding(i, String.format("The train resumes at %s, but paused at %s",
+							location.name(), name(pausing)), NONE);
+				pausing = null;
+				position = location;
+				break;
+			case EventLogFormat.FINISH:
+				if (finished)
+					return new Finding(i, String.format("Schedule %d finished twice", schedule.id()), NONE);
+				if (travelling != null || leaving != null || arriving != null)
+					return new Finding(i, "The train finishes while travelling", NONE);
+				if (position == null || !position.equals(schedule.destination()))
+					return new Finding(i, String.format("The train finishes at %s instead of %s", name(position),
+							schedule.destination().name()), NONE);
+				if (!schedule.destination().isStation())
+					return new Finding(i, String.format("Destination %s is no station",
+							schedule.destination().name()), NONE);
+				finished = true;
+				break;
+			}
+			events.valid[i] = true;
+		}
+		return null;
+	}
+
+	private static String name(final Location location) {
+		return location == null ? "no location" : location.name();
+	}
+
+	/**
+	 * Matches the starts against the schedules of the problem and checks that
+	 * all trains finished when the simulation is done.
+	 */
+	private Finding checkSchedules(final Events events) {
+		final var toStart = new PendingSchedules(problem);
+		int finished = 0;
+		for (int i = 0; i < events.size; i++) {
+			switch (events.tag[i]) {
+			case EventLogFormat.START:
+				if (!events.valid[i])
+					break;
+				try {
+					toStart.take(events.schedule[i]);
+				} catch (IllegalStateException e) {
+					return new Finding(i, e.getMessage(), NONE);
+				}
+				break;
+			case EventLogFormat.FINISH:
+				if (events.valid[i])
+					finished++;
+				break;
+			case EventLogFormat.DONE:
+				if (finished != problem.schedules().size())
+					return new Finding(i, String.format("Only %d of %d schedules finished", finished,
+							problem.schedules().size()), NONE);
+				events.valid[i] = true;
+				break;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks that only one train at a time travels on a connection.
+	 */
+	private Finding checkConnection(final Events events, final List<Integer> touching) {
+		int occupant = NONE;
+		for (final int i : touching) {
+			if (events.tag[i] == EventLogFormat.TRAVEL) {
+				if (occupant != NONE)
+					return new Finding(i, String.format("%s is used by schedule %d", events.connection[i],
+							events.schedule[occupant].id()), occupant);
+				occupant = i;
+			} else {
+				occupant = NONE;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks the trains heading for, standing at and parking at a location.
+	 */
+	private Finding checkLocation(final Events events, final Location location, final List<Integer> touching) {
+		final int id = location.getRomanAndAntoineID();
+		int heading = NONE;
+		final var standing = new HashMap<Integer, Integer>();
+		int parked = 0;
+		for (final int i : touching) {
+			final int train = events.schedule[i].id();
+			switch (events.tag[i]) {
+			case EventLogFormat.START:
+				standing.put(train, i);
+				break;
+			case EventLogFormat.LEAVE:
+				standing.remove(train);
+				break;
+			case EventLogFormat.TRAVEL:
+				if (events.target[i] != id)
+					break;
+				if (heading != NONE)
+					return new Finding(i, String.format("Schedule %d heads for %s already",
+							events.schedule[heading].id(), location.name()), heading);
+				heading = i;
+				break;
+			case EventLogFormat.ARRIVE:
+				heading = NONE;
+				if (!location.isStation() && !standing.isEmpty()) {
+					final int other = standing.values().iterator().next();
+					return new Finding(i, String.format("Schedule %d stands at %s", events.schedule[other].id(),
+							location.name()), other);
+				}
+				standing.put(train, i);
+				break;
+			case EventLogFormat.PAUSE:
+				standing.remove(train);
+				if (parked == location.capacity())
+					return new Finding(i, String.format("All %d parking places at %s are taken", parked,
+							location.name()), NONE);
+				parked++;
+				break;
+			case EventLogFormat.RESUME:
+				parked--;
+				standing.put(train, i);
+				break;
+			}
+		}
+		return null;
+	}
+
+	private Violation violation(final Events events, final Finding finding) {
+		final int position = finding.position;
+		final var context = new ArrayList<TrainEvent>();
+		if (finding.conflict != NONE)
+			context.add(events.events[finding.conflict]);
+		if (events.schedule[position] != null) {
+			final int train = events.schedule[position].id();
+			final var before = new ArrayList<TrainEvent>();
+			for (int i = position - 1; i >= 0 && before.size() < 3; i--)
+				if (events.schedule[i] != null && events.schedule[i].id() == train)
+					before.add(0, events.events[i]);
+			context.addAll(before);
+		}
+		return new Violation(events.original[position], events.events[position], finding.message, context);
+	}
+}
@@ -0,0 +1,56 @@
+package lockingTrains.validation;
+
+import java.util.HashMap;
+
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+
+/**
+ * The schedules of a problem that have not been started yet, counted by origin
+ * and destination. A started train may run any schedule with the same origin
+ * and destination, so only the counts matter. Locations are identified by
+ * {@link Location#getRomanAndAntoineID()}.
+ */
+final class PendingSchedules {
+	private final HashMap<Long, int[]> remaining;
+	private final HashMap<Long, Integer> total;
+
+	/**
+	 * @param problem whose schedules are pending.
+	 */
+	PendingSchedules(final Problem problem) {
+		this.remaining = new HashMap<>();
+		this.total = new HashMap<>();
+		for (final var schedule : problem.schedules()) {
+			final long key = key(schedule.origin(), schedule.destination());
+			remaining.computeIfAbsent(key, k -> new int[1])[0]++;
+			total.merge(key, 1, Integer::sum);
+		}
+	}
+
+	private static long key(final Location origin, final Location destination) {
+		return (long) origin.getRomanAndAntoineID() << 32 | destination.getRomanAndAntoineID() & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Removes one schedule with the origin and destination of a starting train.
+	 *
+	 * @param schedule of the starting train.
+	 *
+	 * @throws IllegalStateException if the problem has no such schedule, or all
+	 *                               of them were started already.
+	 */
+	void take(final TrainSchedule schedule) {
+		final long key = key(schedule.origin(), schedule.destination());
+		final var count = remaining.get(key);
+		if (count == null)
+			throw new IllegalStateException(String.format("Schedule %d from %s to %s is not part of the problem!",
+					schedule.id(), schedule.origin().name(), schedule.destination().name()));
+		if (count[0] == 0)
+			throw new IllegalStateException(String.format(
+					"Schedule %d from %s to %s starts, but all %d schedules between them were started already!",
+					schedule.id(), schedule.origin().name(), schedule.destination().name(), total.get(key)));
+		count[0]--;
+	}
+}
@@ -2,14 +2,13 @@ package lockingTrains.validation;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import lockingTrains.shared.Connection;
 import lockingTrains.shared.Location;
 import lockingTrains.shared.Problem;
+import lockingTrains.shared.TimeScale;
 import lockingTrains.shared.TrainSchedule;
 
 /**
@@ -22,7 +21,8 @@ import lockingTrains.shared.TrainSchedule;
  */
 public class Validator extends Recorder {
 	private final Problem problem;
-	private final List<TrainSchedule> toStart;
+	private final TimeScale timeScale;
+	private final PendingSchedules toStart;
 
 	private final Map<Integer, Integer> capacities;
 	private final Map<Integer, Integer> travelling;
@@ -37,13 +37,25 @@ public class Validator extends Recorder {
 	private final Map<Integer, Long> eta;
 
 	/**
-	 * Constructs a new validator.
+	 * Constructs a new validator for a simulation in real time.
 	 *
 	 * @param problem the problem to validate simulator action for.
 	 */
 	public Validator(final Problem problem) {
+		this(problem, TimeScale.REAL);
+	}
+
+	/**
+	 * Constructs a new validator.
+	 *
+	 * @param problem   the problem to validate simulator action for.
+	 * @param timeScale the simulation runs at, arrivals are expected by the scaled
+	 *                  travel times.
+	 */
+	public Validator(final Problem problem, final TimeScale timeScale) {
 		this.problem = problem;
-		this.toStart = new LinkedList<>(problem.schedules());
+		this.timeScale = timeScale;
+		this.toStart = new PendingSchedules(problem);
 		this.travelling = new HashMap<>();
 		this.started = new HashSet<>();
 		this.finished = new HashSet<>();
@@ -70,21 +82,10 @@ public class Validator extends Recorder {
 
 	@Override
 	void start(final long timestamp, final TrainSchedule schedule) {
-		assertTrue(!started.contains(schedule.id()));
+		if (started.contains(schedule.id()))
+			throw new IllegalStateException(String.format("Schedule %d was started twice!", schedule.id()));
 		assertTrue(schedule.origin().isStation());
-
-		boolean foundSchedule = false;
-		for (final var it = toStart.iterator(); it.hasNext();) {
-			final var candidate = it.next();
-
-			if (candidate.origin().equals(schedule.origin())
-					&& candidate.destination().equals(schedule.destination())) {
-				foundSchedule = true;
-				it.remove();
-				break;
-			}
-		}
-		assertTrue(foundSchedule);
+		toStart.take(schedule);
 
 		started.add(schedule.id());
 		position.put(schedule.id(), schedule.origin().id());
@@ -127,7 +128,7 @@ public class Validator extends Recorder {
 		arriving.put(schedule.id(), nextLocationID);
 		travelling.put(schedule.id(), section.id());
 
-		eta.put(schedule.id(), timestamp + section.time());
+		eta.put(schedule.id(), timestamp + timeScale.millis(section.time()));
 	}
 
 	@Override
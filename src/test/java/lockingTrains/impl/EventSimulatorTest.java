@@ -0,0 +1,77 @@
+package lockingTrains.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TimeScale;
+import lockingTrains.shared.TrainSchedule;
+import lockingTrains.validation.CatRecorder;
+import lockingTrains.validation.Logger;
+import lockingTrains.validation.TrainEvent;
+import lockingTrains.validation.Validator;
+
+public class EventSimulatorTest {
+	private static final int TWO_HOURS = 7_200_000;
+
+	private static long timestamp(final TrainEvent event) {
+		return Long.parseLong(event.toString().substring(0, event.toString().indexOf(':')));
+	}
+
+	/**
+	 * @return Two trains heading for the same station over connections of two
+	 *         hours each.
+	 */
+	private static Problem sharedDestination() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 1, 0);
+		final var c = new Location("C", Location.Capacity.INFINITE, 2, 0);
+
+		final var locations = new ArrayList<Location>();
+		locations.add(a);
+		locations.add(b);
+		locations.add(c);
+
+		final var connections = new ArrayList<Connection>();
+		connections.add(new Connection(a, b, TWO_HOURS));
+		connections.add(new Connection(c, b, TWO_HOURS));
+
+		final var map = new Map("", locations, connections);
+		return new Problem(map, List.of(new TrainSchedule(a, b), new TrainSchedule(c, b)));
+	}
+
+	@Test(timeout = 2000)
+	public void virtualClock() {
+		final var problem = sharedDestination();
+		final var logger = new Logger();
+		final var recorder = new CatRecorder(List.of(logger, new Validator(problem)));
+
+		assertTrue(new EventSimulator(problem, recorder, problem.map().router(), TimeScale.REAL).run());
+
+		//only one train may head for B at a time, so the second one arrives two hours later
+		final var log = logger.eventLog();
+		assertEquals(2 * TWO_HOURS, timestamp(log.get(log.size() - 1)) - timestamp(log.get(0)));
+	}
+
+	@Test(timeout = 2000)
+	public void scaledClock() {
+		final var problem = sharedDestination();
+		final var options = new SimulatorOptions().mode(SimulatorOptions.Mode.EVENTS).timeScale(2.5);
+		final var logger = new Logger();
+		final var recorder = new CatRecorder(List.of(logger, new Validator(problem, options.timeScale())));
+
+		assertTrue(Simulator.run(problem, recorder, options));
+
+		//the virtual clock advances by the scaled travel times, which the validator expects
+		final var log = logger.eventLog();
+		assertEquals(5 * TWO_HOURS, timestamp(log.get(log.size() - 1)) - timestamp(log.get(0)));
+	}
+}
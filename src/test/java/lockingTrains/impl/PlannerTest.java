@@ -0,0 +1,70 @@
+package lockingTrains.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+
+public class PlannerTest {
+	private final Location a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+	private final Location x = new Location("X", Location.Capacity.get(1), 1, 0);
+	private final Location b = new Location("B", Location.Capacity.INFINITE, 2, 0);
+	private final Connection ax = new Connection(a, x, 10);
+	private final Connection xb = new Connection(x, b, 10);
+	private final Map map;
+
+	public PlannerTest() {
+		final var locations = new ArrayList<Location>();
+		locations.add(a);
+		locations.add(x);
+		locations.add(b);
+
+		final var connections = new ArrayList<Connection>();
+		connections.add(ax);
+		connections.add(xb);
+
+		this.map = new Map("line", locations, connections);
+	}
+
+	@Test
+	public void opposingTrainsTakeTurns() {
+		final var problem = new Problem(map, List.of(new TrainSchedule(a, b), new TrainSchedule(b, a)));
+		final var plan = new Planner(map).plan(problem);
+
+		final var first = plan.steps(0);
+		assertEquals(2, first.size());
+		assertEquals(0, first.get(0).start());
+		assertEquals(20, first.get(1).end());
+
+		//the second train may only head for X once the first one has left it and cleared xb
+		final var second = plan.steps(1);
+		assertEquals(2, second.size());
+		assertEquals(xb, second.get(0).connection());
+		assertTrue(second.get(0).start() > first.get(1).end());
+		assertEquals(second.get(1).end(), plan.makespan());
+
+		//both trains use every position, the first one first
+		for (final var order : plan.order()) {
+			if (order.length > 1)
+				assertEquals(0, order[0]);
+		}
+	}
+
+	@Test
+	public void trainAtDestination() {
+		final var problem = new Problem(map, List.of(new TrainSchedule(a, a)));
+		final var plan = new Planner(map).plan(problem);
+
+		assertTrue(plan.steps(0).isEmpty());
+		assertEquals(0, plan.makespan());
+	}
+}
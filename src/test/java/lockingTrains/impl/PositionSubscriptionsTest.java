@@ -0,0 +1,83 @@
+package lockingTrains.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+
+public class PositionSubscriptionsTest {
+	private final Map map;
+
+	public PositionSubscriptionsTest() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		final var c = new Location("C", Location.Capacity.INFINITE, 0, 0);
+
+		final var connections = new ArrayList<Connection>();
+		connections.add(new Connection(a, b, 1));
+		connections.add(new Connection(b, c, 1));
+
+		final var locations = new ArrayList<Location>();
+		locations.add(a);
+		locations.add(b);
+		locations.add(c);
+
+		this.map = new Map("", locations, connections);
+	}
+
+	@Test
+	public void onlySubscribersAreWoken() {
+		final var subscriptions = new PositionSubscriptions(map);
+		final int connection = subscriptions.connectionSlot(1);
+		final int location = subscriptions.locationSlot(1);
+		assertTrue(connection != location);
+
+		final var first = subscriptions.subscribe(connection);
+		final var second = subscriptions.subscribe(location);
+		assertEquals(1, subscriptions.subscribers(connection));
+
+		subscriptions.freed(location);
+		assertFalse(first.isFired());
+		assertTrue(second.isFired());
+
+		subscriptions.freed(connection);
+		assertTrue(first.isFired());
+		assertEquals(0, subscriptions.subscribers(connection));
+	}
+
+	@Test
+	public void cancel() {
+		final var subscriptions = new PositionSubscriptions(map);
+		final int slot = subscriptions.locationSlot(2);
+
+		final var kept = subscriptions.subscribe(slot);
+		final var cancelled = subscriptions.subscribe(slot);
+		cancelled.cancel();
+		assertEquals(1, subscriptions.subscribers(slot));
+
+		subscriptions.freed(slot);
+		assertTrue(kept.isFired());
+		assertFalse(cancelled.isFired());
+	}
+
+	@Test(timeout = 2000)
+	public void awaitReturnsWhenFreed() throws InterruptedException {
+		final var subscriptions = new PositionSubscriptions(map);
+		final int slot = subscriptions.connectionSlot(0);
+
+		final var waiting = new Thread(() -> subscriptions.subscribe(slot).await());
+		waiting.start();
+		while (subscriptions.subscribers(slot) == 0)
+			Thread.yield();
+
+		subscriptions.freed(slot);
+		waiting.join();
+	}
+}
@@ -0,0 +1,108 @@
+package lockingTrains.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Position;
+
+public class ReservationTableTest {
+	private final Map map;
+
+	/**
+	 * A line of 70 locations, so the positions span several words of the atomic
+	 * table.
+	 */
+	public ReservationTableTest() {
+		final var locations = new ArrayList<Location>();
+		for (int i = 0; i < 70; i++)
+			locations.add(new Location("L" + i, Location.Capacity.INFINITE, i, 0));
+
+		final var connections = new ArrayList<Connection>();
+		for (int i = 0; i + 1 < locations.size(); i++)
+			connections.add(new Connection(locations.get(i), locations.get(i + 1), 1));
+
+		this.map = new Map("line", locations, connections);
+	}
+
+	private static int[] range(final int from, final int to) {
+		final var result = new int[to - from];
+		for (int i = 0; i < result.length; i++)
+			result[i] = from + i;
+		return result;
+	}
+
+	/**
+	 * Runs an action in another thread, as the lock-based table lets the thread
+	 * holding a reservation reserve it again.
+	 */
+	private static void inOtherThread(final Runnable action) throws InterruptedException {
+		final var thread = new Thread(action);
+		thread.start();
+		thread.join();
+	}
+
+	private void tryReserve(final Function<Map, ReservationTable> factory) throws InterruptedException {
+		final var table = factory.apply(map);
+
+		final var reserved = new Position[] { map.connections().get(0) };
+		inOtherThread(() -> reserved[0] = table.tryReserve(range(10, 60), range(10, 61)));
+		assertNull(reserved[0]);
+		assertEquals(map.connections().get(10), table.tryReserve(range(0, 11), range(0, 12)));
+		assertEquals(map.locations().get(60), table.tryReserve(range(60, 69), range(60, 70)));
+
+		//the failed attempts must not keep anything reserved
+		assertNull(table.tryReserve(range(0, 10), range(0, 10)));
+		assertNull(table.tryReserve(range(60, 69), range(61, 70)));
+	}
+
+	private void reserveWaits(final Function<Map, ReservationTable> factory) throws InterruptedException {
+		final var table = factory.apply(map);
+		assertNull(table.tryReserve(new int[] { 5 }, new int[] { 5, 6 }));
+
+		final var waiting = new Thread(() -> table.reserve(range(3, 8), range(3, 9)));
+		waiting.start();
+		waiting.join(50);
+		assertTrue(waiting.isAlive());
+
+		//the waiting thread must not hold any part of its route
+		assertNull(table.tryReserve(new int[] { 3 }, new int[] { 3 }));
+		table.freeConnection(3);
+		table.freeLocation(3);
+
+		table.freeConnection(5);
+		table.freeLocation(5);
+		table.freeLocation(6);
+		waiting.join(1000);
+		assertTrue(!waiting.isAlive());
+		assertEquals(map.locations().get(3), table.tryReserve(new int[0], new int[] { 3 }));
+	}
+
+	@Test
+	public void locksTryReserve() throws InterruptedException {
+		tryReserve(LockReservationTable::new);
+	}
+
+	@Test
+	public void atomicTryReserve() throws InterruptedException {
+		tryReserve(AtomicReservationTable::new);
+	}
+
+	@Test(timeout = 2000)
+	public void locksReserveWaits() throws InterruptedException {
+		reserveWaits(LockReservationTable::new);
+	}
+
+	@Test(timeout = 2000)
+	public void atomicReserveWaits() throws InterruptedException {
+		reserveWaits(AtomicReservationTable::new);
+	}
+}
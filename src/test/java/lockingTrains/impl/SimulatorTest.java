@@ -1,18 +1,38 @@
 package lockingTrains.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import lockingTrains.shared.AvoidSet;
 import lockingTrains.shared.Connection;
 import lockingTrains.shared.Location;
 import lockingTrains.shared.Map;
 import lockingTrains.shared.Problem;
+import lockingTrains.shared.Router;
 import lockingTrains.shared.TrainSchedule;
+import lockingTrains.validation.AsyncRecorder;
+import lockingTrains.validation.CatRecorder;
+import lockingTrains.validation.DoneEvent;
 import lockingTrains.validation.ExceptionRecorder;
+import lockingTrains.validation.FinishEvent;
+import lockingTrains.validation.Logger;
+import lockingTrains.validation.ThreadRecorder;
+import lockingTrains.validation.TrainEvent;
 import lockingTrains.validation.Validator;
 
 public class SimulatorTest {
@@ -40,6 +60,44 @@ public class SimulatorTest {
 		this.map = new Map("", locations, connections);
 	}
 
+	/**
+	 * @return A train between every ordered pair of locations.
+	 */
+	private Problem allPairsProblem() {
+		final var schedules = new ArrayList<TrainSchedule>();
+		for (final var locationA : map.locations()) {
+			for (final var locationB : map.locations()) {
+				if (locationA.equals(locationB))
+					continue;
+
+				schedules.add(new TrainSchedule(locationA, locationB));
+			}
+		}
+
+		return new Problem(map, schedules);
+	}
+
+	/**
+	 * Passes all queries on to the router a map had before and counts those that
+	 * do not avoid anything.
+	 */
+	private static class UnconstrainedQueries extends Router {
+		private final Router router;
+		private final AtomicInteger count = new AtomicInteger();
+
+		UnconstrainedQueries(final Map map) {
+			super(map);
+			this.router = map.router();
+		}
+
+		@Override
+		public List<Connection> route(final Location origin, final Location destination, final AvoidSet avoid) {
+			if (avoid.isEmpty())
+				count.incrementAndGet();
+			return router.route(origin, destination, avoid);
+		}
+	}
+
 	@Test(timeout = 100)
 	public void testErrorReporting() {
 		final var schedules = new ArrayList<TrainSchedule>();
@@ -84,19 +142,301 @@ public class SimulatorTest {
 
 	@Test(timeout = 1000)
 	public void complex() {
-		final var schedules = new ArrayList<TrainSchedule>();
-		for (final var locationA : map.locations()) {
-			for (final var locationB : map.locations()) {
-				if (locationA.equals(locationB))
-					continue;
+		final var problem = allPairsProblem();
 
-				schedules.add(new TrainSchedule(locationA, locationB));
+		assertTrue(Simulator.run(problem, new Validator(problem)));
+	}
+
+	@Test(timeout = 1000)
+	public void complexWithRoutingTable() {
+		final var problem = allPairsProblem();
+		final var queries = new UnconstrainedQueries(map);
+		map.setRouter(queries);
+		final var options = new SimulatorOptions().routingTableLimit(map.locations().size());
+
+		assertTrue(Simulator.run(problem, new Validator(problem), options));
+		//the table answers all queries that do not avoid anything, the map's router only computes detours
+		assertEquals(0, queries.count.get());
+	}
+
+	/**
+	 * Sends one train along a line of stations while another one only travels the
+	 * last connection the other way.
+	 *
+	 * @param options how to run the simulation.
+	 *
+	 * @return Whether the short trip finished first.
+	 */
+	private static boolean shortTripFinishesFirst(final SimulatorOptions options) {
+		final var locations = new ArrayList<Location>();
+		for (int i = 0; i < 5; i++)
+			locations.add(new Location("L" + i, Location.Capacity.INFINITE, i, 0));
+		final var connections = new ArrayList<Connection>();
+		for (int i = 0; i + 1 < locations.size(); i++)
+			connections.add(new Connection(locations.get(i), locations.get(i + 1), 50));
+
+		final var line = new Map("", locations, connections);
+		final var shortTrip = new TrainSchedule(locations.get(4), locations.get(3));
+		final var problem = new Problem(line, List.of(new TrainSchedule(locations.get(0), locations.get(4)), shortTrip));
+		final var logger = new Logger();
+
+		assertTrue(Simulator.run(problem, new CatRecorder(List.of(logger, new Validator(problem))), options));
+		final var finish = logger.eventLog().stream().filter(event -> event instanceof FinishEvent).findFirst();
+		return finish.get().toString().endsWith(String.format("finish(%d)", shortTrip.id()));
+	}
+
+	@Test(timeout = 2000)
+	public void reservationWindowLeavesRestOfRoute() {
+		//the long trip only holds the next connection, so the short one does not wait for it to arrive
+		for (int run = 0; run < 3; run++)
+			assertTrue(shortTripFinishesFirst(new SimulatorOptions().reservationWindow(1)));
+	}
+
+	@Test(timeout = 1000)
+	public void complexWithAtomicReservations() {
+		final var problem = allPairsProblem();
+		final var options = new SimulatorOptions().reservations(SimulatorOptions.Reservations.ATOMIC);
+
+		assertTrue(Simulator.run(problem, new Validator(problem), options));
+
+		//a route blocked at its end must not keep its beginning reserved
+		final var table = new AtomicReservationTable(map);
+		final var connections = map.connections().stream().mapToInt(Connection::getRomanAndAntoineID).toArray();
+		final var locations = map.locations().stream().mapToInt(Location::getRomanAndAntoineID).toArray();
+		final var de = map.connections().get(3);
+		assertNull(table.tryReserve(new int[] { de.getRomanAndAntoineID() }, new int[0]));
+		assertEquals(de, table.tryReserve(connections, locations));
+		assertNull(table.tryReserve(Arrays.copyOf(connections, 3), locations));
+	}
+
+	@Test(timeout = 2000)
+	public void timedReservationsLeaveRestOfRoute() {
+		//the long trip plans its whole route, but only enters it up to the next station before it goes on
+		final var options = new SimulatorOptions().reservations(SimulatorOptions.Reservations.TIMED);
+		for (int run = 0; run < 3; run++)
+			assertTrue(shortTripFinishesFirst(options));
+	}
+
+	@Test(timeout = 2000)
+	public void timedReservationWindowLeavesRestOfRoute() {
+		//the long trip only plans and enters the time intervals of its next connection
+		final var options = new SimulatorOptions().reservations(SimulatorOptions.Reservations.TIMED)
+				.reservationWindow(1);
+		for (int run = 0; run < 3; run++)
+			assertTrue(shortTripFinishesFirst(options));
+	}
+
+	/**
+	 * Three trains whose routes overlap in a cycle, so that each of them is
+	 * planned on the next location of another one before that train.
+	 */
+	@Test(timeout = 5000)
+	public void timedReservationsInCycle() {
+		final var x = new Location("X", Location.Capacity.INFINITE, 0, 0);
+		final var y = new Location("Y", Location.Capacity.INFINITE, 0, 0);
+		final var z = new Location("Z", Location.Capacity.INFINITE, 0, 0);
+		final var w = new Location("W", Location.Capacity.INFINITE, 0, 0);
+		final var v = new Location("V", Location.Capacity.INFINITE, 0, 0);
+		final var map = new Map("", List.of(x, y, z, w, v), List.of(new Connection(x, y, 100),
+				new Connection(y, z, 100), new Connection(z, x, 100), new Connection(w, y, 50), new Connection(v, z, 100)));
+		final var problem = new Problem(map,
+				List.of(new TrainSchedule(x, y), new TrainSchedule(w, z), new TrainSchedule(v, x)));
+		final var options = new SimulatorOptions().reservations(SimulatorOptions.Reservations.TIMED);
+
+		for (int run = 0; run < 5; run++)
+			assertTrue(Simulator.run(problem, new Validator(problem), options));
+	}
+
+	@Test(timeout = 1000)
+	public void complexPlanned() {
+		final var problem = allPairsProblem();
+		final var reports = new ArrayList<String>();
+		final var options = new SimulatorOptions().mode(SimulatorOptions.Mode.PLANNED).report(reports::add);
+
+		assertTrue(Simulator.run(problem, new Validator(problem), options));
+		//the plan is only reported to the caller who asked for it
+		assertEquals(1, reports.size());
+		assertTrue(reports.get(0).startsWith("Plan(trains=" + problem.schedules().size()));
+
+		//the plan ends with its last step and never has two trains on a connection at once
+		final var plan = new Planner(map).plan(problem);
+		final var travels = new ArrayList<Plan.Step>();
+		long last = 0;
+		for (int train = 0; train < problem.schedules().size(); train++) {
+			for (final var step : plan.steps(train)) {
+				last = Math.max(last, step.end());
+				if (!step.isParking())
+					travels.add(step);
+			}
+		}
+		assertEquals(last, plan.makespan());
+		for (final var first : travels) {
+			for (final var second : travels) {
+				if (first != second && first.connection().equals(second.connection()))
+					assertTrue(first.end() <= second.start() || second.end() <= first.start());
 			}
 		}
+	}
+
+	/**
+	 * @return The events of a log with their time relative to the first one.
+	 */
+	private static List<String> relative(final List<TrainEvent> log) {
+		final long first = timestamp(log.get(0));
+		return log.stream()
+				.map(event -> (timestamp(event) - first) + event.toString().substring(event.toString().indexOf(':')))
+				.collect(Collectors.toList());
+	}
+
+	private static long timestamp(final TrainEvent event) {
+		return Long.parseLong(event.toString().substring(0, event.toString().indexOf(':')));
+	}
+
+	@Test(timeout = 1000)
+	public void complexWithEvents() {
+		final var problem = allPairsProblem();
+		final var options = new SimulatorOptions().mode(SimulatorOptions.Mode.EVENTS);
+		final var first = new Logger();
+		final var second = new Logger();
+
+		assertTrue(Simulator.run(problem, new CatRecorder(List.of(first, new Validator(problem))), options));
+		assertTrue(Simulator.run(problem, new CatRecorder(List.of(second, new Validator(problem))), options));
+		//on the virtual clock, a run does not depend on thread scheduling and can be repeated exactly
+		assertEquals(relative(first.eventLog()), relative(second.eventLog()));
+	}
+
+	@Test(timeout = 1000)
+	public void complexOnVirtualThreads() throws ReflectiveOperationException {
+		final var problem = allPairsProblem();
+		final var options = new SimulatorOptions().threads(SimulatorOptions.Threads.VIRTUAL);
+		final var threads = new ThreadRecorder();
+
+		assertTrue(Simulator.run(problem, new CatRecorder(List.of(threads, new Validator(problem))), options));
+		assertEquals(problem.schedules().size(), threads.threads().size());
+		//the trains ran as tasks of an executor instead of as threads of their own
+		for (final var thread : threads.threads())
+			assertFalse(thread instanceof Train);
+
+		//virtual threads are only available from Java 21 on, older runtimes use a cached thread pool
+		final Method isVirtual;
+		try {
+			isVirtual = Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException e) {
+			return;
+		}
+		for (final var thread : threads.threads())
+			assertTrue((Boolean) isVirtual.invoke(thread));
+	}
+
+	@Test(timeout = 1000)
+	public void complexOnExecutor() {
+		final var problem = allPairsProblem();
+		final var pool = Executors.newCachedThreadPool();
+		final var tasks = new AtomicInteger();
+		final Executor executor = task -> {
+			tasks.incrementAndGet();
+			pool.execute(task);
+		};
+		final var options = new SimulatorOptions().executor(executor);
+
+		assertTrue(Simulator.run(problem, new Validator(problem), options));
+		//every train ran as a task of the executor instead of starting a thread of its own
+		assertEquals(problem.schedules().size(), tasks.get());
+		pool.shutdown();
+	}
+
+	@Test(timeout = 2000)
+	public void complexWithAsyncRecorder() {
+		final var problem = allPairsProblem();
+		final var logger = new Logger();
+		try (final var recorder = new AsyncRecorder(List.of(logger, new Validator(problem)))) {
+			assertTrue(Simulator.run(problem, recorder));
+		}
+		final var events = logger.eventLog();
+		assertTrue(events.get(events.size() - 1) instanceof DoneEvent);
+
+		//no event got lost in the ring: all locations are stations on a line, so every train starts, finishes
+		//and leaves, travels and arrives once per connection of its only route
+		int expected = 1;
+		for (final var schedule : problem.schedules())
+			expected += 2 + 3 * map.route(schedule.origin(), schedule.destination(), List.of()).size();
+		assertEquals(expected, events.size());
+	}
+
+	@Test(timeout = 1000)
+	public void mapRouterIsKept() {
+		final var router = map.router();
+		final var problem = new Problem(map, List.of(new TrainSchedule(e, a), new TrainSchedule(a, e)));
+		final var options = new SimulatorOptions().routingTableLimit(map.locations().size());
+
+		assertTrue(Simulator.run(problem, new Validator(problem), options));
+		assertSame(router, map.router());
+	}
+
+	@Test(timeout = 100)
+	public void asyncErrorReporting() {
+		final var schedules = new ArrayList<TrainSchedule>();
+		schedules.add(new TrainSchedule(e, a));
 
 		final var problem = new Problem(map, schedules);
 
-		assertTrue(Simulator.run(problem, new Validator(problem)));
+		try (final var recorder = new AsyncRecorder(List.of(new ExceptionRecorder()))) {
+			assertFalse(Simulator.run(problem, recorder));
+		}
+	}
+
+	/**
+	 * @return Three trains over connections of one minute each, where only one
+	 *         can park in the middle.
+	 */
+	private static Problem oneMinuteConnections() {
+		final var locations = new ArrayList<Location>();
+		final Location a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final Location b = new Location("B", Location.Capacity.get(1), 0, 0);
+		final Location c = new Location("C", Location.Capacity.INFINITE, 0, 0);
+		locations.add(a);
+		locations.add(b);
+		locations.add(c);
+
+		final var connections = new ArrayList<Connection>();
+		connections.add(new Connection(a, b, 60_000));
+		connections.add(new Connection(b, c, 60_000));
+
+		final var map = new Map("", locations, connections);
+
+		final var schedules = new ArrayList<TrainSchedule>();
+		schedules.add(new TrainSchedule(a, c));
+		schedules.add(new TrainSchedule(c, a));
+		schedules.add(new TrainSchedule(c, a));
+
+		return new Problem(map, schedules);
+	}
+
+	@Test(timeout = 2000)
+	public void timeScale() {
+		final var problem = oneMinuteConnections();
+		final var options = new SimulatorOptions().timeScale(0.001);
+
+		assertTrue(Simulator.run(problem, new Validator(problem, options.timeScale()), options));
+	}
+
+	@Test(timeout = 4000)
+	public void concurrentTimeScales() throws InterruptedException, ExecutionException {
+		final var fast = oneMinuteConnections();
+		final var slow = oneMinuteConnections();
+		final var fastOptions = new SimulatorOptions().timeScale(0.001);
+		final var slowOptions = new SimulatorOptions().timeScale(0.003);
+
+		//each run travels and validates at its own speed while the other one is running
+		final var pool = Executors.newSingleThreadExecutor();
+		try {
+			final var slowRun = pool.submit(
+					() -> Simulator.run(slow, new Validator(slow, slowOptions.timeScale()), slowOptions));
+			assertTrue(Simulator.run(fast, new Validator(fast, fastOptions.timeScale()), fastOptions));
+			assertTrue(slowRun.get());
+		} finally {
+			pool.shutdown();
+		}
 	}
 
 	@Test(timeout = 100)
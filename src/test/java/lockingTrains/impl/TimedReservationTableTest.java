@@ -0,0 +1,137 @@
+package lockingTrains.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.TimeScale;
+
+public class TimedReservationTableTest {
+	private final Map map;
+	private final Location a;
+	private final Location b;
+	private final Location c;
+	private final Location d;
+	private final Connection ab;
+	private final Connection bc;
+	private final Connection cd;
+
+	public TimedReservationTableTest() {
+		a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		c = new Location("C", Location.Capacity.INFINITE, 0, 0);
+		d = new Location("D", Location.Capacity.INFINITE, 0, 0);
+		ab = new Connection(a, b, 100);
+		bc = new Connection(b, c, 50);
+		cd = new Connection(c, d, 20);
+
+		final var locations = new ArrayList<Location>();
+		locations.add(a);
+		locations.add(b);
+		locations.add(c);
+		locations.add(d);
+
+		final var connections = new ArrayList<Connection>();
+		connections.add(ab);
+		connections.add(bc);
+		connections.add(cd);
+
+		this.map = new Map("", locations, connections);
+	}
+
+	@Test
+	public void overlappingIntervalsConflict() {
+		final var table = new TimedReservationTable(map, TimeScale.REAL);
+		assertNull(table.tryReserve(0, List.of(ab, bc), a, true));
+		assertEquals(a, table.tryReserve(1, List.of(ab), a, true));
+		//bc is only needed by train 0 after crossing ab
+		assertNull(table.tryReserve(1, List.of(bc), c, true));
+		assertEquals(ab, table.tryReserve(2, List.of(ab), b, true));
+
+		table.free(table.slot(a), 0);
+		assertNull(table.tryReserve(2, List.of(), a, true));
+	}
+
+	@Test
+	public void positionsAheadStayFree() {
+		final var table = new TimedReservationTable(map, TimeScale.REAL);
+		//train 0 only reaches cd after crossing ab and bc, train 1 uses it before
+		assertNull(table.tryReserve(0, List.of(ab, bc, cd), a, true));
+		assertNull(table.tryReserve(1, List.of(cd), d, true));
+
+		//train 0 enters up to the station b, which leaves cd to train 1
+		assertEquals(TimedReservationTable.NONE, table.tryEnter(0, table.slots(List.of(ab), a, true)));
+		assertEquals(TimedReservationTable.NONE, table.tryEnter(1, table.slots(List.of(cd), d, true)));
+
+		//until train 1 has arrived at c and left it, train 0 may not go on beyond b
+		table.free(table.slot(d), 1);
+		table.free(table.slot(cd), 1);
+		assertEquals(table.slot(c), table.tryEnter(0, table.slots(List.of(bc, cd), b, false)));
+		table.free(table.slot(c), 1);
+		assertEquals(TimedReservationTable.NONE, table.tryEnter(0, table.slots(List.of(bc, cd), b, false)));
+	}
+
+	@Test
+	public void enteredIntervalsCannotBeOvertaken() {
+		final var table = new TimedReservationTable(map, TimeScale.REAL);
+		assertNull(table.tryReserve(1, List.of(bc), b, false));
+
+		//without entering, a short stop at c right now would still fit before train 1
+		table.enter(1, table.slots(List.of(bc), b, false));
+		assertEquals(c, table.tryReserve(2, List.of(), c, true));
+	}
+
+	/**
+	 * Three trains on a triangle X-Y-Z, each planned on the next location of
+	 * another one before that train. Entering location by location, every train
+	 * would wait for the next one while standing on a location the previous one
+	 * waits for.
+	 */
+	@Test(timeout = 5000)
+	public void cycleOfTrains() throws InterruptedException {
+		final var x = new Location("X", Location.Capacity.INFINITE, 0, 0);
+		final var y = new Location("Y", Location.Capacity.INFINITE, 0, 0);
+		final var z = new Location("Z", Location.Capacity.INFINITE, 0, 0);
+		final var w = new Location("W", Location.Capacity.INFINITE, 0, 0);
+		final var v = new Location("V", Location.Capacity.INFINITE, 0, 0);
+		final var xy = new Connection(x, y, 100);
+		final var yz = new Connection(y, z, 100);
+		final var zx = new Connection(z, x, 100);
+		final var wy = new Connection(w, y, 50);
+		final var vz = new Connection(v, z, 100);
+		final var triangle = new Map("", List.of(x, y, z, w, v), List.of(xy, yz, zx, wy, vz));
+		final var table = new TimedReservationTable(triangle, TimeScale.REAL);
+
+		final var routes = List.of(List.of(xy), List.of(wy, yz), List.of(vz, zx));
+		final var starts = List.of(x, w, v);
+		for (int train = 0; train < 3; train++)
+			assertNull(table.tryReserve(train, routes.get(train), starts.get(train), true));
+
+		final var trains = new ArrayList<Thread>();
+		for (int train = 0; train < 3; train++) {
+			final int id = train;
+			trains.add(new Thread(() -> {
+				final int[] route = table.slots(routes.get(id), starts.get(id), true);
+				table.enter(id, route);
+				for (final int slot : route) {
+					try {
+						Thread.sleep(5);
+					} catch (InterruptedException e) {
+						return;
+					}
+					table.free(slot, id);
+				}
+			}));
+		}
+		trains.forEach(Thread::start);
+		for (final var train : trains)
+			train.join();
+	}
+}
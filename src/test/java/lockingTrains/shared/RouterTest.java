@@ -0,0 +1,247 @@
+package lockingTrains.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import lockingTrains.shared.io.Parser;
+
+public class RouterTest {
+	/**
+	 * Parses every map in the test resources (once, using any of its problems).
+	 */
+	private static Collection<Map> allMaps() throws IOException {
+		final var maps = new HashMap<String, Map>();
+		final var files = new File("./src/test/resources").listFiles();
+		for (final var problemFile : files) {
+			if (!problemFile.getName().endsWith(".problem"))
+				continue;
+
+			final String name = firstLine(problemFile);
+			if (maps.containsKey(name))
+				continue;
+
+			for (final var mapFile : files) {
+				if (mapFile.getName().endsWith(".map") && firstLine(mapFile).equals(name))
+					maps.put(name, Parser.parse(mapFile, problemFile).map());
+			}
+		}
+		return maps.values();
+	}
+
+	private static String firstLine(final File file) throws IOException {
+		try (final var reader = new BufferedReader(new FileReader(file))) {
+			return reader.readLine();
+		}
+	}
+
+	private static int length(final List<Connection> route) {
+		return route.stream().mapToInt(Connection::time).sum();
+	}
+
+	/**
+	 * Asserts that {@code route} leads from {@code origin} to {@code destination}
+	 * without touching {@code avoid}.
+	 */
+	private static void assertValid(final List<Connection> route, final Location origin, final Location destination,
+			final Collection<Position> avoid) {
+		var current = origin;
+		assertTrue(!avoid.contains(current));
+		for (final var connection : route) {
+			assertTrue(!avoid.contains(connection));
+			if (connection.first().equals(current))
+				current = connection.second();
+			else if (connection.second().equals(current))
+				current = connection.first();
+			else
+				throw new AssertionError("Route is not connected: " + route);
+			assertTrue(!avoid.contains(current));
+		}
+		assertEquals(destination, current);
+	}
+
+	/**
+	 * Compares the routes of a router against the {@link ReferenceRouter} for all
+	 * pairs of locations on all maps, without and with some positions to avoid.
+	 */
+	private static void assertSameLengths(final Function<Map, Router> factory) throws IOException {
+		final var random = new Random(42);
+		for (final var map : allMaps()) {
+			final var reference = new ReferenceRouter(map);
+			final var router = factory.apply(map);
+
+			final var positions = new ArrayList<Position>(map.locations());
+			positions.addAll(map.connections());
+
+			for (final var origin : map.locations()) {
+				for (final var destination : map.locations()) {
+					final var avoid = new ArrayList<Position>();
+					for (int i = 0; i < 3; i++) {
+						final var expected = reference.route(origin, destination, avoid);
+						final var actual = router.route(origin, destination, avoid);
+						if (expected == null) {
+							assertNull(actual);
+						} else {
+							assertValid(actual, origin, destination, avoid);
+							assertEquals(map.name(), length(expected), length(actual));
+						}
+						avoid.add(positions.get(random.nextInt(positions.size())));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void dijkstra() throws IOException {
+		assertSameLengths(DijkstraRouter::new);
+	}
+
+	@Test
+	public void aStar() throws IOException {
+		assertSameLengths(AStarRouter::new);
+	}
+
+	@Test
+	public void bidirectional() throws IOException {
+		assertSameLengths(BidirectionalRouter::new);
+	}
+
+	@Test
+	public void routingTable() throws IOException {
+		assertSameLengths(map -> new RoutingTable(map, new DijkstraRouter(map)));
+	}
+
+	@Test
+	public void contractionHierarchy() throws IOException {
+		assertSameLengths(map -> new ContractionHierarchy(map, new DijkstraRouter(map)));
+	}
+
+	@Test
+	public void contractionHierarchyOnGrid() {
+		final var map = grid(8);
+		final var hierarchy = new ContractionHierarchy(map, new DijkstraRouter(map));
+		final var reference = new ReferenceRouter(map);
+		final var none = new ArrayList<Position>();
+
+		for (final var origin : map.locations()) {
+			for (final var destination : map.locations()) {
+				final var route = hierarchy.route(origin, destination, none);
+				assertValid(route, origin, destination, none);
+				assertEquals(length(reference.route(origin, destination, none)), length(route));
+			}
+		}
+	}
+
+	@Test
+	public void routingTableMemory() {
+		final var map = grid(10);
+		final var table = new RoutingTable(map, new DijkstraRouter(map));
+
+		assertEquals(4 * 100 * 100, table.memoryBytes());
+		assertEquals(18, table.route(map.locations().get(0), map.locations().get(99), new AvoidSet(map)).size());
+	}
+
+	@Test
+	public void routeCache() throws IOException {
+		assertSameLengths(map -> new RouteCache(map, new DijkstraRouter(map), 64, 2));
+	}
+
+	@Test
+	public void routeCacheReturnsCopies() {
+		final var map = grid(3);
+		final var cache = new RouteCache(map, new DijkstraRouter(map), 16, 1);
+		final var origin = map.locations().get(0);
+		final var destination = map.locations().get(8);
+		final var avoid = new AvoidSet(map);
+
+		final var first = cache.route(origin, destination, avoid);
+		first.remove(0);
+		final var second = cache.route(origin, destination, avoid);
+		assertEquals(4, second.size());
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+
+		avoid.add(map.locations().get(1));
+		cache.route(origin, destination, avoid);
+		assertEquals(2, cache.misses());
+
+		avoid.add(map.locations().get(3));
+		assertNull(cache.route(origin, destination, avoid));
+		assertNull(cache.route(origin, destination, avoid));
+		assertEquals(2, cache.misses());
+		assertEquals(2, cache.size());
+	}
+
+	/**
+	 * Builds a square grid map whose coordinates match its travel times.
+	 */
+	static Map grid(final int size) {
+		final var locations = new ArrayList<Location>();
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++)
+				locations.add(new Location(x + "_" + y, Location.Capacity.INFINITE, 10 * x, 10 * y));
+
+		final var connections = new ArrayList<Connection>();
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size)
+					connections.add(new Connection(locations.get(x * size + y), locations.get((x + 1) * size + y), 10));
+				if (y + 1 < size)
+					connections.add(new Connection(locations.get(x * size + y), locations.get(x * size + y + 1), 12));
+			}
+		}
+
+		return new Map("grid", locations, connections);
+	}
+
+	@Test
+	public void aStarIsGoalDirected() {
+		final int size = 60;
+		final var map = grid(size);
+		final var origin = map.locations().get(size / 2);
+		final var destination = map.locations().get((size - 1) * size + size / 2);
+
+		final var dijkstra = new DijkstraRouter(map);
+		final var aStar = new AStarRouter(map);
+		assertEquals(1, aStar.timePerDistance(), 1e-6);
+
+		final var expected = dijkstra.route(origin, destination, new AvoidSet(map));
+		final var actual = aStar.route(origin, destination, new AvoidSet(map));
+		assertEquals(length(expected), length(actual));
+		assertTrue(aStar.settledInLastQuery() * 10 < dijkstra.settledInLastQuery());
+	}
+
+	@Test
+	public void aStarWithoutCoordinates() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		final var map = new Map("", List.of(a, b), List.of(new Connection(a, b, 10)));
+
+		final var router = new AStarRouter(map);
+		assertEquals(0, router.timePerDistance(), 0);
+		assertEquals(1, router.route(a, b, new AvoidSet(map)).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void routerOfOtherMap() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var map = new Map("", List.of(a), List.of());
+		final var other = new Map("", List.of(a), List.of());
+
+		map.setRouter(new ReferenceRouter(other));
+	}
+}
@@ -2,6 +2,7 @@ package lockingTrains.shared;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -194,4 +195,79 @@ public class RoutingTest {
 
 		assertEquals(50, route.get(0).time());
 	}
+
+	@Test
+	public void parallelConnections() {
+		final var locations = new ArrayList<Location>();
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		locations.add(a);
+		locations.add(b);
+
+		final var connections = new ArrayList<Connection>();
+		final var slow = new Connection(a, b, 20);
+		final var fast = new Connection(b, a, 10);
+		connections.add(slow);
+		connections.add(fast);
+
+		final var map = new Map("", locations, connections);
+
+		assertEquals(List.of(fast), map.route(a, b, Collections.emptyList()));
+		assertEquals(List.of(slow), map.route(a, b, List.of(fast)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void connectionToUnknownLocation() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+
+		new Map("", List.of(a), List.of(new Connection(a, b, 10)));
+	}
+
+	@Test
+	public void avoidSet() {
+		final var locations = new ArrayList<Location>();
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		final var c = new Location("C", Location.Capacity.INFINITE, 0, 0);
+		locations.add(a);
+		locations.add(b);
+		locations.add(c);
+
+		final var connections = new ArrayList<Connection>();
+		final var ab = new Connection(a, b, 10);
+		connections.add(ab);
+		connections.add(new Connection(b, c, 10));
+		connections.add(new Connection(a, c, 50));
+
+		final var map = new Map("", locations, connections);
+		final var avoid = new AvoidSet(map);
+
+		assertEquals(2, map.route(c, a, avoid).size());
+
+		avoid.add(b);
+		assertEquals(1, map.route(c, a, avoid).size());
+		assertTrue(avoid.contains(b));
+		assertEquals(1, avoid.size());
+
+		avoid.remove(b);
+		avoid.add(ab);
+		assertEquals(List.of(ab), List.copyOf(avoid));
+		assertEquals(1, map.route(c, a, avoid).size());
+
+		avoid.add(c);
+		assertNull(map.route(c, a, avoid));
+
+		avoid.clear();
+		assertTrue(avoid.isEmpty());
+		assertEquals(2, map.route(c, a, avoid).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void avoidSetOfOtherMap() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var map = new Map("", List.of(a), List.of());
+
+		new AvoidSet(map).add(new Location("B", Location.Capacity.INFINITE, 0, 0));
+	}
 }
@@ -3,11 +3,13 @@ package lockingTrains.shared.io;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -396,4 +398,77 @@ public class ParserTest {
 		assertEquals("Saarbahn", problem.map().name());
 		assertEquals(2, problem.schedules().size());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void numberFormats() {
+		final var locations = new ArrayList<Location>();
+		assertTrue(Parser.parseLocation("Signed:+2:(-0,+2147483647)", locations));
+		assertEquals(2, locations.get(0).capacity());
+		assertEquals(0, locations.get(0).x());
+		assertEquals(Integer.MAX_VALUE, locations.get(0).y());
+
+		assertFalse(Parser.parseLocation("Plus:+:(0,0)", locations));
+		assertFalse(Parser.parseLocation("Space:0:(0, 0)", locations));
+		assertFalse(Parser.parseLocation("Trailing:0:(0,0) ", locations));
+		assertFalse(Parser.parseLocation("Dash-Name:0:(0,0)", locations));
+		assertEquals(1, locations.size());
+	}
+
+	@Test
+	public void numberOverflow() {
+		final var locations = new ArrayList<Location>();
+		String expected = null;
+		try {
+			Integer.parseInt("2147483648");
+		} catch (NumberFormatException e) {
+			expected = e.getMessage();
+		}
+		try {
+			Parser.parseLocation("Large:0:(2147483648,0)", locations);
+			fail();
+		} catch (NumberFormatException e) {
+			assertEquals(expected, e.getMessage());
+		}
+		//lines that do not match are rejected before any number is converted
+		assertFalse(Parser.parseLocation("Large:0:(99999999999,0", locations));
+	}
+
+	@Test
+	public void mapErrors() throws IOException {
+		final String[][] cases = { { "M\nA:-1:(0,0)\nA:-1:(1,1)", "Location names must be unique!" },
+				{ "M\nA:-1:(0,0)\nA-B:1", "Could not find location \"A\" or \"B\"!" },
+				{ "M\nA:-1:(0,0)\nA-A:-1", "Travel times must be non-negative!" },
+				{ "M\nA:-1:(0,0)\nA-A:1\nB:-1:(0,0)", "\"B:-1:(0,0)\" is not a valid input line for the map file!" } };
+		for (final var input : cases) {
+			try {
+				Parser.parseMap(new BufferedReader(new StringReader(input[0])));
+				fail(input[0]);
+			} catch (IllegalArgumentException e) {
+				assertEquals(input[1], e.getMessage());
+			}
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void largeProblem() throws IOException {
+		final var map = new StringBuilder("Large\n");
+		for (int i = 0; i < 20_000; i++)
+			map.append(String.format("L%d:-1:(%d,%d)%n", i, i, -i));
+		for (int i = 1; i < 20_000; i++)
+			map.append(String.format("L%d-L%d:%d%n", i - 1, i, i));
+		final var problem = new StringBuilder("Large\n");
+		for (int i = 0; i < 200_000; i++)
+			problem.append(String.format("L%d->L%d%n", i % 20_000, (i * 7) % 20_000));
+
+		final var large = Parser.parseMap(new BufferedReader(new StringReader(map.toString())));
+		assertEquals(20_000, large.locations().size());
+		assertEquals(19_999, large.connections().size());
+		assertEquals(-19_999, large.locations().get(19_999).y());
+
+		final var schedules = Parser.parseProblem(new BufferedReader(new StringReader(problem.toString())), large)
+				.schedules();
+		assertEquals(200_000, schedules.size());
+		assertEquals("L9", schedules.get(20_009).origin().name());
+		assertEquals("L63", schedules.get(20_009).destination().name());
+	}
+}
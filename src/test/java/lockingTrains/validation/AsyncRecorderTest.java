@@ -0,0 +1,166 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.TrainSchedule;
+
+public class AsyncRecorderTest {
+	private static final int EVENTS = 5_000;
+
+	/**
+	 * Checks that the arrivals of each train come in the order of their
+	 * timestamps.
+	 */
+	private static class OrderRecorder extends Recorder {
+		private final long[] last;
+		private int arrivals;
+
+		OrderRecorder(final int trains) {
+			this.last = new long[trains];
+		}
+
+		@Override
+		public void start(final TrainSchedule schedule) {
+		}
+
+		@Override
+		void start(final long timestamp, final TrainSchedule schedule) {
+		}
+
+		@Override
+		public void leave(final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		public void travel(final TrainSchedule schedule, final Connection section) {
+		}
+
+		@Override
+		void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+		}
+
+		@Override
+		public void arrive(final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+			final int train = Integer.parseInt(location.name());
+			if (timestamp != last[train] + 1)
+				throw new IllegalStateException(String.format("Train %d arrived %d after %d", train, timestamp,
+						last[train]));
+			last[train] = timestamp;
+			arrivals++;
+		}
+
+		@Override
+		public void pause(final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		public void resume(final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+		}
+
+		@Override
+		public void finish(final TrainSchedule schedule) {
+		}
+
+		@Override
+		void finish(final long timestamp, final TrainSchedule schedule) {
+		}
+
+		@Override
+		public void done() {
+		}
+
+		@Override
+		void done(final long timestamp) {
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void producersKeepTheirOrder() throws InterruptedException {
+		final int trains = 8;
+		final var order = new OrderRecorder(trains);
+		final var recorder = new AsyncRecorder(List.of(order), 16);
+
+		final var threads = new ArrayList<Thread>();
+		for (int i = 0; i < trains; i++) {
+			final var location = new Location(Integer.toString(i), Location.Capacity.INFINITE, 0, 0);
+			final var schedule = new TrainSchedule(location, location);
+			threads.add(new Thread(() -> {
+				for (int event = 1; event <= EVENTS; event++)
+					recorder.arrive(event, schedule, location);
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (final var thread : threads)
+			thread.join();
+
+		recorder.done();
+		assertEquals(trains * EVENTS, order.arrivals);
+	}
+
+	@Test(timeout = 1000)
+	public void failureIsReported() {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		final var schedule = new TrainSchedule(a, b);
+		final var logger = new Logger();
+		final var recorder = new AsyncRecorder(List.of(new ExceptionRecorder(), logger));
+
+		recorder.start(schedule);
+		recorder.leave(schedule, a);
+		try {
+			recorder.travel(schedule, new Connection(a, b, 1));
+			recorder.done();
+			fail("done() must report the failure");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		recorder.close();
+		assertEquals(2, logger.eventLog().size());
+	}
+
+	@Test(timeout = 1000)
+	public void failureStopsConsumer() throws InterruptedException {
+		final var a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+		final var schedule = new TrainSchedule(a, b);
+		final var recorder = new AsyncRecorder(List.of(new ExceptionRecorder()), 2);
+
+		//without close(), the consumer has to stop by itself, and a full ring must not block the callers
+		recorder.travel(schedule, new Connection(a, b, 1));
+		try {
+			for (int event = 0; event < 10; event++)
+				recorder.leave(schedule, a);
+			fail("The failure must be reported");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		//the test times out if the consumer keeps running
+		while (recorder.isConsuming())
+			Thread.sleep(1);
+	}
+}
@@ -0,0 +1,85 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import lockingTrains.impl.Simulator;
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+
+public class BufferedLoggerTest {
+	@Test(timeout = 5000)
+	public void mergesThreadsByTimestamp() throws InterruptedException {
+		final int trains = 4;
+		final int events = 1000;
+		final var logger = new BufferedLogger();
+		final var location = new Location("A", Location.Capacity.INFINITE, 0, 0);
+
+		final var threads = new ArrayList<Thread>();
+		for (int i = 0; i < trains; i++) {
+			final int train = i;
+			final var schedule = new TrainSchedule(location, location);
+			threads.add(new Thread(() -> {
+				for (int event = 0; event < events; event++)
+					logger.arrive(event * trains + train, schedule, location);
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (final var thread : threads)
+			thread.join();
+
+		final var log = logger.eventLog();
+		assertEquals(trains * events, log.size());
+		for (int i = 0; i < log.size(); i++)
+			assertEquals(i, log.get(i).timestamp);
+	}
+
+	@Test(timeout = 1000)
+	public void mergedViewIsCached() {
+		final var logger = new BufferedLogger();
+		final var location = new Location("A", Location.Capacity.INFINITE, 0, 0);
+		final var schedule = new TrainSchedule(location, location);
+
+		logger.start(schedule);
+		final var log = logger.eventLog();
+		assertSame(log, logger.eventLog());
+
+		logger.finish(schedule);
+		assertNotSame(log, logger.eventLog());
+		assertEquals(2, logger.eventLog().size());
+	}
+
+	@Test(timeout = 2000)
+	public void replaysOnValidator() {
+		final var locations = new ArrayList<Location>();
+		for (final var name : List.of("A", "B", "C", "D", "E"))
+			locations.add(new Location(name, Location.Capacity.INFINITE, 0, 0));
+		final var connections = new ArrayList<Connection>();
+		for (int i = 0; i + 1 < locations.size(); i++)
+			connections.add(new Connection(locations.get(i), locations.get(i + 1), 1));
+		final var map = new Map("", locations, connections);
+
+		final var schedules = new ArrayList<TrainSchedule>();
+		for (final var from : locations)
+			for (final var to : locations)
+				if (!from.equals(to))
+					schedules.add(new TrainSchedule(from, to));
+		final var problem = new Problem(map, schedules);
+
+		final var logger = new BufferedLogger();
+		assertTrue(Simulator.run(problem, logger));
+
+		final var validator = new Validator(problem);
+		logger.eventLog().forEach(event -> event.replay(validator));
+	}
+}
@@ -0,0 +1,95 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.Test;
+
+import lockingTrains.impl.Simulator;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.io.Parser;
+
+public class EventLogTest {
+	private static Problem parse(final String map, final String problem) throws IOException, URISyntaxException {
+		final var loader = EventLogTest.class.getClassLoader();
+		return Parser.parse(new File(Objects.requireNonNull(loader.getResource(map)).toURI()),
+				new File(Objects.requireNonNull(loader.getResource(problem)).toURI()));
+	}
+
+	private static Path temporaryFile() throws IOException {
+		final var file = Files.createTempFile("events", ".log");
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	@Test(timeout = 10000)
+	public void roundTrip() throws IOException, URISyntaxException {
+		final var problem = parse("manhattan.map", "manhattan_topdown.problem");
+		final var file = temporaryFile();
+		final var logger = new Logger();
+
+		try (final var writer = new EventLogWriter(file, problem)) {
+			assertTrue(Simulator.run(problem, new CatRecorder(List.of(writer, logger))));
+		}
+
+		final var events = logger.eventLog();
+		try (final var reader = new EventLogReader(file, problem)) {
+			for (final var event : events)
+				assertEquals(event.toString(), reader.next().toString());
+			assertNull(reader.next());
+		}
+		assertTrue(Files.size(file) < 8L * events.size());
+
+		try (final var reader = new EventLogReader(file, problem)) {
+			assertEquals(events.size(), reader.replay(new Validator(problem)));
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void timestampsOutOfOrder() throws IOException, URISyntaxException {
+		final var problem = parse("manhattan.map", "manhattan_topdown.problem");
+		final var schedule = problem.schedules().get(3);
+		final var location = problem.map().locations().get(7);
+		final var file = temporaryFile();
+
+		try (final var writer = new EventLogWriter(file, problem)) {
+			writer.arrive(1_000_000_000_000L, schedule, location);
+			writer.leave(999_999_999_990L, schedule, location);
+			writer.done(1_000_000_000_005L);
+		}
+
+		try (final var reader = new EventLogReader(file, problem)) {
+			assertEquals(new ArriveEvent(1_000_000_000_000L, schedule, location).toString(), reader.next().toString());
+			assertEquals(new LeaveEvent(999_999_999_990L, schedule, location).toString(), reader.next().toString());
+			assertEquals(new DoneEvent(1_000_000_000_005L).toString(), reader.next().toString());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void otherProblemIsRejected() throws IOException, URISyntaxException {
+		final var problem = parse("manhattan.map", "manhattan_topdown.problem");
+		final var file = temporaryFile();
+		try (final var writer = new EventLogWriter(file, problem)) {
+			writer.done();
+		}
+
+		final var other = new Problem(problem.map(), Collections.emptyList());
+		try (final var reader = new EventLogReader(file, other)) {
+			fail("The event log must not be read with another problem");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("does not belong"));
+		}
+	}
+}
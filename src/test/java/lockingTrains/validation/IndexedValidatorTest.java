@@ -0,0 +1,169 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.Test;
+
+import lockingTrains.impl.Simulator;
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+import lockingTrains.shared.io.Parser;
+
+public class IndexedValidatorTest {
+	private final Location a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+	private final Location x = new Location("X", Location.Capacity.get(1), 0, 0);
+	private final Location b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+	private final Connection ax = new Connection(a, x, 10);
+	private final Connection xb = new Connection(x, b, 10);
+	final Problem problem;
+	final TrainSchedule ab;
+	final TrainSchedule ba;
+
+	public IndexedValidatorTest() {
+		final var map = new Map("", List.of(a, x, b), List.of(ax, xb));
+		ab = new TrainSchedule(a, b);
+		ba = new TrainSchedule(b, a);
+		problem = new Problem(map, List.of(ab, ba));
+	}
+
+	/**
+	 * Replays events on a validator.
+	 *
+	 * @return The index of the event the validator failed on, or the number of
+	 *         events.
+	 */
+	static int failure(final Recorder validator, final List<TrainEvent> events) {
+		for (int i = 0; i < events.size(); i++) {
+			try {
+				events.get(i).replay(validator);
+			} catch (IllegalStateException e) {
+				return i;
+			}
+		}
+		return events.size();
+	}
+
+	private int compare(final List<TrainEvent> events) {
+		final int expected = failure(new Validator(problem), events);
+		assertEquals(events.toString(), expected, failure(new IndexedValidator(problem), events));
+		return expected;
+	}
+
+	List<TrainEvent> journey(final TrainSchedule schedule, final long start) {
+		final var from = schedule.origin();
+		final var to = schedule.destination();
+		final var first = from.equals(a) ? ax : xb;
+		final var second = from.equals(a) ? xb : ax;
+		return List.of(new StartEvent(start, schedule), new LeaveEvent(start, schedule, from),
+				new TravelEvent(start, schedule, first), new ArriveEvent(start + 10, schedule, x),
+				new LeaveEvent(start + 10, schedule, x), new TravelEvent(start + 10, schedule, second),
+				new ArriveEvent(start + 20, schedule, to), new FinishEvent(start + 20, schedule));
+	}
+
+	@Test(timeout = 1000)
+	public void validRun() {
+		final var events = new ArrayList<TrainEvent>(journey(ab, 0));
+		events.addAll(journey(ba, 20));
+		events.add(new DoneEvent(40));
+		assertEquals(events.size(), compare(events));
+	}
+
+	@Test(timeout = 1000)
+	public void invalidRuns() {
+		//arriving too early
+		assertEquals(3, compare(List.of(new StartEvent(0, ab), new LeaveEvent(0, ab, a), new TravelEvent(0, ab, ax),
+				new ArriveEvent(9, ab, x))));
+		//both trains heading for the same location
+		assertEquals(5, compare(List.of(new StartEvent(0, ab), new StartEvent(0, ba), new LeaveEvent(0, ab, a),
+				new TravelEvent(0, ab, ax), new LeaveEvent(0, ba, b), new TravelEvent(0, ba, xb))));
+		//starting twice
+		assertEquals(1, compare(List.of(new StartEvent(0, ab), new StartEvent(0, ab))));
+		//done before all trains finished
+		final var events = new ArrayList<TrainEvent>(journey(ab, 0));
+		events.add(new DoneEvent(20));
+		assertEquals(8, compare(events));
+		//pausing at a station
+		assertEquals(1, compare(List.of(new StartEvent(0, ab), new PauseEvent(0, ab, a))));
+	}
+
+	/**
+	 * Generates events that mostly follow the possible moves of both trains, so
+	 * that runs get far before they break a rule.
+	 */
+	List<TrainEvent> randomRun(final Random random) {
+		final var schedules = List.of(ab, ba);
+		final var events = new ArrayList<TrainEvent>();
+		final var at = new Location[2];
+		final var heading = new Location[2];
+		final var via = new Connection[2];
+		final var parked = new boolean[2];
+		final var started = new boolean[2];
+		final var eta = new long[2];
+		long time = 0;
+		for (int i = 0; i < 40; i++) {
+			time += random.nextInt(16);
+			final int train = random.nextInt(2);
+			final var schedule = schedules.get(train);
+			final var location = at[train];
+			if (random.nextInt(40) == 0) {
+				events.add(new DoneEvent(time));
+			} else if (!started[train]) {
+				started[train] = true;
+				at[train] = schedule.origin();
+				events.add(new StartEvent(time, schedule));
+			} else if (parked[train]) {
+				parked[train] = false;
+				events.add(new ResumeEvent(time, schedule, location));
+			} else if (via[train] != null) {
+				if (random.nextInt(10) > 0)
+					time = Math.max(time, eta[train]);
+				events.add(new ArriveEvent(time, schedule, heading[train]));
+				at[train] = heading[train];
+				via[train] = null;
+			} else if (location != null && location.equals(schedule.destination()) && random.nextBoolean()) {
+				events.add(new FinishEvent(time, schedule));
+			} else if (location != null && location.equals(x) && random.nextInt(3) == 0) {
+				parked[train] = true;
+				events.add(new PauseEvent(time, schedule, location));
+			} else if (location != null) {
+				events.add(new LeaveEvent(time, schedule, location));
+				final var connection = location.equals(x) ? (random.nextBoolean() ? ax : xb)
+						: location.equals(a) ? ax : xb;
+				events.add(new TravelEvent(time, schedule, connection));
+				via[train] = connection;
+				eta[train] = time + connection.time();
+				heading[train] = connection.first().equals(location) ? connection.second() : connection.first();
+				at[train] = null;
+			}
+		}
+		return events;
+	}
+
+	@Test(timeout = 5000)
+	public void randomRuns() {
+		final var random = new Random(42);
+		for (int run = 0; run < 5000; run++)
+			compare(randomRun(random));
+	}
+
+	@Test(timeout = 10000)
+	public void simulation() throws IOException, URISyntaxException {
+		final var loader = IndexedValidatorTest.class.getClassLoader();
+		final var problem = Parser.parse(new File(Objects.requireNonNull(loader.getResource("manhattan.map")).toURI()),
+				new File(Objects.requireNonNull(loader.getResource("manhattan.problem")).toURI()));
+		final var validators = new CatRecorder(List.of(new Validator(problem), new IndexedValidator(problem)));
+		assertTrue(Simulator.run(problem, validators));
+	}
+}
@@ -0,0 +1,97 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.After;
+import org.junit.Test;
+
+import lockingTrains.impl.Simulator;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.io.Parser;
+
+public class JournalTest {
+	private final Path directory;
+	private final Problem problem;
+
+	public JournalTest() throws IOException, URISyntaxException {
+		final var loader = JournalTest.class.getClassLoader();
+		this.problem = Parser.parse(new File(Objects.requireNonNull(loader.getResource("manhattan.map")).toURI()),
+				new File(Objects.requireNonNull(loader.getResource("manhattan_topdown.problem")).toURI()));
+		this.directory = Files.createTempDirectory("journal");
+	}
+
+	@After
+	public void deleteJournal() throws IOException {
+		try (final var files = Files.list(directory)) {
+			for (final var file : (Iterable<Path>) files::iterator)
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	@Test(timeout = 10000)
+	public void replaysSimulation() throws IOException {
+		final var logger = new Logger();
+		try (final var journal = new JournalRecorder(directory, problem, 100)) {
+			assertTrue(Simulator.run(problem, new CatRecorder(List.of(journal, logger))));
+		}
+
+		final var events = logger.eventLog();
+		assertTrue(Files.exists(JournalRecorder.segmentFile(directory, events.size() / 100)));
+		try (final var reader = new JournalReader(directory, problem)) {
+			for (final var event : events)
+				assertEquals(event.toString(), reader.next().toString());
+			assertNull(reader.next());
+			assertTrue(reader.isComplete());
+		}
+
+		try (final var reader = new JournalReader(directory, problem)) {
+			assertEquals(events.size(), reader.replay(new Validator(problem)));
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void recoversUntilTornRecord() throws IOException {
+		final var schedule = problem.schedules().get(0);
+		final var journal = new JournalRecorder(directory, problem, 4);
+		journal.start(10, schedule);
+		journal.leave(11, schedule, schedule.origin());
+		journal.arrive(12, schedule, schedule.origin());
+		journal.arrive(13, schedule, schedule.origin());
+		journal.arrive(14, schedule, schedule.origin());
+		journal.arrive(15, schedule, schedule.origin());
+
+		//the simulation crashed, nothing was closed
+		try (final var reader = new JournalReader(directory, problem)) {
+			final var logger = new Logger();
+			assertEquals(6, reader.replay(logger));
+			assertEquals(new ArriveEvent(15, schedule, schedule.origin()).toString(),
+					logger.eventLog().get(5).toString());
+			assertFalse(reader.isComplete());
+		}
+
+		//break the checksum of the fifth record, in the second segment
+		try (final var channel = FileChannel.open(JournalRecorder.segmentFile(directory, 1),
+				StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).putInt(0, 42), 2 * JournalRecorder.RECORD_BYTES - 8);
+		}
+		try (final var reader = new JournalReader(directory, problem)) {
+			assertEquals(4, reader.replay(new Logger()));
+		}
+		journal.close();
+	}
+}
@@ -0,0 +1,74 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import lockingTrains.impl.Simulator;
+import lockingTrains.shared.io.Parser;
+
+public class OfflineValidatorTest {
+	private final IndexedValidatorTest runs = new IndexedValidatorTest();
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	/**
+	 * @return The index of the first invalid event, or the number of events.
+	 */
+	private int failure(final List<TrainEvent> events) {
+		final var violation = new OfflineValidator(runs.problem, pool).check(events);
+		return violation == null ? events.size() : violation.index();
+	}
+
+	@Test(timeout = 5000)
+	public void matchesValidator() {
+		final var random = new Random(7);
+		for (int run = 0; run < 5000; run++) {
+			final var events = runs.randomRun(random);
+			assertEquals(events.toString(), IndexedValidatorTest.failure(new Validator(runs.problem), events),
+					failure(events));
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void sortsByTimestamp() {
+		final var events = new ArrayList<TrainEvent>(List.of(new DoneEvent(60)));
+		events.addAll(runs.journey(runs.ba, 30));
+		events.addAll(runs.journey(runs.ab, 0));
+		assertEquals(events.size(), failure(events));
+	}
+
+	@Test(timeout = 1000)
+	public void reportsContext() {
+		final var ab = runs.ab;
+		final var ba = runs.ba;
+		final var events = List.of(new StartEvent(0, ab), new StartEvent(0, ba), new LeaveEvent(0, ab, ab.origin()),
+				new TravelEvent(0, ab, runs.problem.map().connections().get(0)), new LeaveEvent(1, ba, ba.origin()),
+				new TravelEvent(1, ba, runs.problem.map().connections().get(1)));
+		final var violation = new OfflineValidator(runs.problem).check(events);
+		assertEquals(5, violation.index());
+		assertEquals(events.get(5), violation.event());
+		assertEquals(String.format("Schedule %d heads for X already", ab.id()), violation.message());
+		assertEquals(List.of(events.get(3), events.get(1), events.get(4)), violation.context());
+	}
+
+	@Test(timeout = 10000)
+	public void simulation() throws IOException, URISyntaxException {
+		final var loader = OfflineValidatorTest.class.getClassLoader();
+		final var problem = Parser.parse(new File(Objects.requireNonNull(loader.getResource("manhattan.map")).toURI()),
+				new File(Objects.requireNonNull(loader.getResource("manhattan.problem")).toURI()));
+		final var logger = new BufferedLogger();
+		assertTrue(Simulator.run(problem, logger));
+		assertNull(new OfflineValidator(problem).check(logger.eventLog()));
+	}
+}
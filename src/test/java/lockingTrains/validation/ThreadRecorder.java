@@ -0,0 +1,85 @@
+package lockingTrains.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.TrainSchedule;
+
+public class ThreadRecorder extends Recorder {
+	private final List<Thread> threads = new ArrayList<>();
+
+	@Override
+	public synchronized void start(final TrainSchedule schedule) {
+		start(System.currentTimeMillis(), schedule);
+	}
+
+	@Override
+	void start(final long timestamp, final TrainSchedule schedule) {
+		threads.add(Thread.currentThread());
+	}
+
+	@Override
+	public void leave(final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	void leave(final long timestamp, final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	public void travel(final TrainSchedule schedule, final Connection section) {
+	}
+
+	@Override
+	void travel(final long timestamp, final TrainSchedule schedule, final Connection section) {
+	}
+
+	@Override
+	public void arrive(final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	void arrive(final long timestamp, final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	public void pause(final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	void pause(final long timestamp, final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	public void resume(final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	void resume(final long timestamp, final TrainSchedule schedule, final Location location) {
+	}
+
+	@Override
+	public void finish(final TrainSchedule schedule) {
+	}
+
+	@Override
+	void finish(final long timestamp, final TrainSchedule schedule) {
+	}
+
+	@Override
+	public void done() {
+	}
+
+	@Override
+	void done(final long timestamp) {
+	}
+
+	/**
+	 * @return The threads the trains started on, in the order they started.
+	 */
+	public synchronized List<Thread> threads() {
+		return new ArrayList<>(threads);
+	}
+}
@@ -0,0 +1,65 @@
+package lockingTrains.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import lockingTrains.shared.Connection;
+import lockingTrains.shared.Location;
+import lockingTrains.shared.Map;
+import lockingTrains.shared.Problem;
+import lockingTrains.shared.TrainSchedule;
+
+public class ValidatorTest {
+	private final Location a = new Location("A", Location.Capacity.INFINITE, 0, 0);
+	private final Location b = new Location("B", Location.Capacity.INFINITE, 0, 0);
+	private final Map map = new Map("", List.of(a, b), List.of(new Connection(a, b, 1)));
+	private final List<Function<Problem, Recorder>> validators = List.of(Validator::new, IndexedValidator::new);
+
+	private static void assertFailure(final String message, final Runnable action) {
+		try {
+			action.run();
+			fail("Expected: " + message);
+		} catch (IllegalStateException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void startDiagnostics() {
+		final var ab = new TrainSchedule(a, b);
+		final var problem = new Problem(map, List.of(ab));
+		for (final var factory : validators) {
+			final var validator = factory.apply(problem);
+			final var aa = new TrainSchedule(a, a);
+			assertFailure(String.format("Schedule %d from A to A is not part of the problem!", aa.id()),
+					() -> validator.start(aa));
+
+			validator.start(ab);
+			assertFailure(String.format("Schedule %d was started twice!", ab.id()), () -> validator.start(ab));
+
+			final var again = new TrainSchedule(a, b);
+			assertFailure(String.format(
+					"Schedule %d from A to B starts, but all 1 schedules between them were started already!",
+					again.id()), () -> validator.start(again));
+		}
+	}
+
+	@Test(timeout = 2000)
+	public void manyStarts() {
+		final var schedules = new ArrayList<TrainSchedule>();
+		for (int i = 0; i < 50_000; i++)
+			schedules.add(i % 2 == 0 ? new TrainSchedule(a, b) : new TrainSchedule(b, a));
+		final var problem = new Problem(map, schedules);
+		for (final var factory : validators) {
+			final var validator = factory.apply(problem);
+			for (int i = schedules.size() - 1; i >= 0; i--)
+				validator.start(schedules.get(i));
+		}
+	}
+}